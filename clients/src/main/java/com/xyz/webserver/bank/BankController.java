@@ -1,19 +1,30 @@
 package com.xyz.webserver.bank;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xyz.constants.BankProcessingStatus;
+import com.xyz.observer.ObserverRuntime;
 import com.xyz.observer.bank.BankLoanProcessingStateObserver;
+import com.xyz.processor.PartyDirectory;
 import com.xyz.processor.bank.BankProcessingProcessor;
 import com.xyz.states.BankFinanceState;
 import com.xyz.states.schema.LoaningProcessSchemas;
+import com.xyz.webserver.data.ControllerBatchRequest;
 import com.xyz.webserver.data.ControllerRequest;
 import com.xyz.webserver.data.ControllerStatusResponse;
 import com.xyz.webserver.data.LoanApplicationException;
+import com.xyz.webserver.data.PagedStatusResponse;
+import com.xyz.webserver.util.AsyncFlowResponses;
+import com.xyz.webserver.util.NodeAutomationCheck;
 import com.xyz.webserver.util.NodeRPCConnection;
+import com.xyz.webserver.util.VaultAggregates;
+import com.xyz.webserver.util.VaultChangeToken;
+import com.xyz.webserver.util.VaultPaging;
 import net.corda.client.jackson.JacksonSupport;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.identity.CordaX500Name;
 import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.vault.Builder;
 import net.corda.core.node.services.vault.QueryCriteria;
 import net.corda.core.node.services.vault.QueryCriteriaUtils;
@@ -24,9 +35,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
@@ -38,7 +51,13 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 public class BankController {
     private static final Logger logger = LoggerFactory.getLogger(RestController.class);
     private final CordaRPCOps proxy;
+    private final CordaRPCOps flowProxy;
     private final CordaX500Name me;
+    private final AsyncFlowResponses asyncFlowResponses;
+    private final VaultChangeToken changeToken;
+    private final PartyDirectory partyDirectory;
+    private final ObserverRuntime observerRuntime;
+    private final NodeAutomationCheck nodeAutomationCheck;
 
     @Value("${disable.observers}")
     private String disableObservers;
@@ -47,15 +66,21 @@ public class BankController {
     public void init(){
         logger.info("Disable Observers property value : " + disableObservers);
 
-        if (disableObservers.equalsIgnoreCase("false")) {
-            Thread bankProcessingRequestThread = new Thread(
-                    () -> new BankLoanProcessingStateObserver(proxy).observeBankProcessingRequest());
-            bankProcessingRequestThread.start();
+        if (disableObservers.equalsIgnoreCase("false") && nodeAutomationCheck.observersAllowed()) {
+            new BankLoanProcessingStateObserver(flowProxy, partyDirectory).observeBankProcessingRequest(observerRuntime);
         }
     }
 
-    public BankController(NodeRPCConnection rpc) {
+    public BankController(NodeRPCConnection rpc, AsyncFlowResponses asyncFlowResponses,
+            VaultChangeToken changeToken, PartyDirectory partyDirectory, ObserverRuntime observerRuntime,
+            NodeAutomationCheck nodeAutomationCheck) {
+        this.partyDirectory = partyDirectory;
+        this.observerRuntime = observerRuntime;
+        this.nodeAutomationCheck = nodeAutomationCheck;
         this.proxy = rpc.getproxy();
+        this.flowProxy = rpc.getFlowProxy();
+        this.changeToken = changeToken;
+        this.asyncFlowResponses = asyncFlowResponses;
         this.me = proxy.nodeInfo().getLegalIdentities().get(0).getName();
     }
 
@@ -78,33 +103,88 @@ public class BankController {
         return myMap;
     }
 
-    @GetMapping(value = "fetchAllBankProcessingStates")
-    private ResponseEntity<ControllerStatusResponse> requestAllStates() {
-        List<Map<String, String>> applicationStatus = new ArrayList<>();
-        List<StateAndRef<BankFinanceState>> processingStates = proxy.vaultQuery(BankFinanceState.class).getStates();
-        for (StateAndRef<BankFinanceState> stateRef : processingStates) {
-            BankFinanceState financeState = stateRef.getState().getData();
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.BANK_PROCESSING_ID, financeState.getBankLoanProcessingId().getId().toString());
-                put(ControllerStatusResponse.STATUS, financeState.getBankProcessingStatus().toString());
-            }});
+    @GetMapping(value = "stats", produces = APPLICATION_JSON_VALUE)
+    private ResponseEntity<Object> stats(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            String etag = changeToken.etag(BankFinanceState.class, "stats");
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("countByBankProcessingStatus", VaultAggregates.countByStatus(proxy, BankFinanceState.class,
+                    "bankProcessingStatus", LoaningProcessSchemas.PersistentBankProcessingSchema.class,
+                    BankProcessingStatus.class));
+            stats.put("loanAmountByBankProcessingStatus", VaultAggregates.sumGroupedBy(proxy, BankFinanceState.class,
+                    "loanAmount", "bankProcessingStatus", LoaningProcessSchemas.PersistentBankProcessingSchema.class));
+            stats.put("loanAmountByCreditScoreDesc", VaultAggregates.sumGroupedBy(proxy, BankFinanceState.class,
+                    "loanAmount", "creditScoreDesc", LoaningProcessSchemas.PersistentBankProcessingSchema.class));
+            stats.put("loanAmountByBusinessType", VaultAggregates.sumGroupedBy(proxy, BankFinanceState.class,
+                    "loanAmount", "businessType", LoaningProcessSchemas.PersistentBankProcessingSchema.class));
+            return VaultChangeToken.ok(stats, etag);
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
-        if (applicationStatus.isEmpty()) {
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.STATUS, "No applications founds in the system for processing");
-            }});
+    }
+
+    @GetMapping(value = "fetchAllBankProcessingStates")
+    private ResponseEntity<Object> requestAllStates(
+            @RequestParam(value = "page", defaultValue = VaultPaging.DEFAULT_PAGE) int page,
+            @RequestParam(value = "pageSize", defaultValue = VaultPaging.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            QueryCriteria criteria = status == null ? new QueryCriteria.VaultQueryCriteria()
+                    : VaultPaging.statusCriteria("bankProcessingStatus",
+                    LoaningProcessSchemas.PersistentBankProcessingSchema.class,
+                    Collections.singleton(VaultPaging.parseStatus(BankProcessingStatus.class, status)));
+
+            String etag = changeToken.etag(BankFinanceState.class, "states", status, page, pageSize, sort);
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+
+            Vault.Page<BankFinanceState> vaultPage = proxy.vaultQueryBy(criteria,
+                    VaultPaging.pageSpecification(page, pageSize),
+                    VaultPaging.sort(sort, LoaningProcessSchemas.PersistentBankProcessingSchema.class),
+                    BankFinanceState.class);
+
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            for (StateAndRef<BankFinanceState> stateRef : vaultPage.getStates()) {
+                BankFinanceState financeState = stateRef.getState().getData();
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.BANK_PROCESSING_ID, financeState.getBankLoanProcessingId().getId().toString());
+                    put(ControllerStatusResponse.STATUS, financeState.getBankProcessingStatus().toString());
+                }});
+            }
+            if (applicationStatus.isEmpty()) {
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.STATUS, "No applications founds in the system for processing");
+                }});
+            }
+            return VaultChangeToken.ok(
+                    new PagedStatusResponse(applicationStatus, page, pageSize, vaultPage.getTotalStatesAvailable()), etag);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(new ControllerStatusResponse(applicationStatus));
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     @PostMapping(value = "bankProcessingStatus", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> getStatusOfApplication(@RequestBody ControllerRequest request) {
+    private ResponseEntity<Object> getStatusOfApplication(@RequestBody ControllerRequest request,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         QueryCriteria bankProcessingIdCustomQuery;
         List<Map<String, String>> applicationStatus = new ArrayList<>();
         try {
+            String etag = changeToken.etag(BankFinanceState.class, "status", request.getApplicationID());
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
             bankProcessingIdCustomQuery = new QueryCriteria.VaultCustomQueryCriteria(
                     Builder.equal(QueryCriteriaUtils.getField("bankProcessingId",
                             LoaningProcessSchemas.PersistentBankProcessingSchema.class), UUID.fromString(request.getApplicationID())));
@@ -116,16 +196,14 @@ public class BankController {
                     put(ControllerStatusResponse.BANK_PROCESSING_ID, request.getApplicationID());
                     put(ControllerStatusResponse.STATUS, "Input BankProcessingId doesnt exists in System.");
                 }});
-                return ResponseEntity.status(HttpStatus.OK)
-                        .body(new ControllerStatusResponse(applicationStatus));
+                return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
             } else {
                 String loanApplicationStatus = applicationStates.get(0).getState().getData().getBankProcessingStatus().toString();
                 applicationStatus.add(new HashMap<String, String>() {{
                     put(ControllerStatusResponse.BANK_PROCESSING_ID, request.getApplicationID());
                     put(ControllerStatusResponse.STATUS, loanApplicationStatus);
                 }});
-                return ResponseEntity.status(HttpStatus.OK)
-                        .body(new ControllerStatusResponse(applicationStatus));
+                return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
             }
         } catch (NoSuchFieldException e) {
             e.printStackTrace();
@@ -135,25 +213,64 @@ public class BankController {
 
     }
 
-    @PostMapping(value = "initateBankProcess", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> initateBankProcess(@RequestBody ControllerRequest controllerRequest) {
+    @PostMapping(value = "bankProcessingStatuses", produces = "application/json", consumes = "application/json")
+    private ResponseEntity<Object> getStatusOfApplications(@RequestBody ControllerBatchRequest request,
+                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            logger.info("HTTP REQUEST :Initiating Bank processing  for BankApplicationId : " + controllerRequest.getApplicationID());
-            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            Set<UUID> bankProcessingIds = VaultPaging.parseIds(request.getApplicationIDs());
+            String etag = changeToken.etag(BankFinanceState.class, "statuses", bankProcessingIds.toString());
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            logger.info("HTTP REQUEST : Batch bank processing status lookup for " + bankProcessingIds.size() + " BankProcessingIds");
 
-            BankProcessingProcessor process = new BankProcessingProcessor(
-                    new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), proxy);
-            String response = process.processLoanDisbursement();
-
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.BANK_PROCESSING_ID, controllerRequest.getApplicationID());
-                put(ControllerStatusResponse.STATUS, response);
-            }});
-            logger.info("HTTP RESPONSE : Bank processed the loan with response : " + response);
-            return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
+            Map<UUID, String> statusesById = new HashMap<>();
+            for (StateAndRef<BankFinanceState> stateRef : VaultPaging.queryByIds(proxy, BankFinanceState.class,
+                    "bankProcessingId", LoaningProcessSchemas.PersistentBankProcessingSchema.class, bankProcessingIds)) {
+                BankFinanceState financeState = stateRef.getState().getData();
+                statusesById.put(financeState.getBankLoanProcessingId().getId(), financeState.getBankProcessingStatus().toString());
+            }
+
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            for (UUID bankProcessingId : bankProcessingIds) {
+                String processingStatus = statusesById.getOrDefault(bankProcessingId,
+                        "Input BankProcessingId doesnt exists in System.");
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.BANK_PROCESSING_ID, bankProcessingId.toString());
+                    put(ControllerStatusResponse.STATUS, processingStatus);
+                }});
+            }
+            return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
     }
+
+    @PostMapping(value = "initateBankProcess", produces = "application/json", consumes = "application/json")
+    private DeferredResult<ResponseEntity<Object>> initateBankProcess(@RequestBody ControllerRequest controllerRequest) {
+        return asyncFlowResponses.supply(() -> {
+            try {
+                logger.info("HTTP REQUEST :Initiating Bank processing  for BankApplicationId : " + controllerRequest.getApplicationID());
+                List<Map<String, String>> applicationStatus = new ArrayList<>();
+
+                BankProcessingProcessor process = new BankProcessingProcessor(
+                        new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), flowProxy,
+                        partyDirectory);
+                String response = process.processLoanDisbursement();
+
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.BANK_PROCESSING_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.STATUS, response);
+                }});
+                logger.info("HTTP RESPONSE : Bank processed the loan with response : " + response);
+                return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -2,19 +2,29 @@ package com.xyz.webserver.ca;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.observer.ObserverRuntime;
 import com.xyz.observer.ca.CACreditScoreCheckStateObserver;
+import com.xyz.processor.PartyDirectory;
 import com.xyz.processor.ca.CACreditScoreCheckProcessor;
 import com.xyz.states.CreditRatingState;
 import com.xyz.states.schema.LoaningProcessSchemas;
+import com.xyz.webserver.data.ControllerBatchRequest;
 import com.xyz.webserver.data.ControllerRequest;
 import com.xyz.webserver.data.ControllerStatusResponse;
 import com.xyz.webserver.data.LoanApplicationException;
+import com.xyz.webserver.data.PagedStatusResponse;
+import com.xyz.webserver.util.AsyncFlowResponses;
+import com.xyz.webserver.util.NodeAutomationCheck;
 import com.xyz.webserver.util.NodeRPCConnection;
+import com.xyz.webserver.util.VaultAggregates;
+import com.xyz.webserver.util.VaultChangeToken;
+import com.xyz.webserver.util.VaultPaging;
 import net.corda.client.jackson.JacksonSupport;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.identity.CordaX500Name;
 import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.vault.Builder;
 import net.corda.core.node.services.vault.QueryCriteria;
 import net.corda.core.node.services.vault.QueryCriteriaUtils;
@@ -25,9 +35,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
@@ -39,7 +51,13 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 public class CreditAgencyController {
     private static final Logger logger = LoggerFactory.getLogger(RestController.class);
     private final CordaRPCOps proxy;
+    private final CordaRPCOps flowProxy;
     private final CordaX500Name me;
+    private final AsyncFlowResponses asyncFlowResponses;
+    private final VaultChangeToken changeToken;
+    private final PartyDirectory partyDirectory;
+    private final ObserverRuntime observerRuntime;
+    private final NodeAutomationCheck nodeAutomationCheck;
 
     @Value("${disable.observers}")
     private boolean disableObservers;
@@ -47,15 +65,21 @@ public class CreditAgencyController {
     @PostConstruct
     public void init() {
         logger.info("Disable Observers property value : " + disableObservers);
-        if (!disableObservers) {
-            Thread creditObserverThread = new Thread(
-                    () -> new CACreditScoreCheckStateObserver(proxy).observeCreditCheckApplication());
-            creditObserverThread.start();
+        if (!disableObservers && nodeAutomationCheck.observersAllowed()) {
+            new CACreditScoreCheckStateObserver(flowProxy, partyDirectory).observeCreditCheckApplication(observerRuntime);
         }
     }
 
-    public CreditAgencyController(NodeRPCConnection rpc) {
+    public CreditAgencyController(NodeRPCConnection rpc, AsyncFlowResponses asyncFlowResponses,
+            VaultChangeToken changeToken, PartyDirectory partyDirectory, ObserverRuntime observerRuntime,
+            NodeAutomationCheck nodeAutomationCheck) {
+        this.partyDirectory = partyDirectory;
+        this.observerRuntime = observerRuntime;
+        this.nodeAutomationCheck = nodeAutomationCheck;
         this.proxy = rpc.getproxy();
+        this.flowProxy = rpc.getFlowProxy();
+        this.changeToken = changeToken;
+        this.asyncFlowResponses = asyncFlowResponses;
         this.me = proxy.nodeInfo().getLegalIdentities().get(0).getName();
     }
 
@@ -78,37 +102,89 @@ public class CreditAgencyController {
         return myMap;
     }
 
-    @GetMapping(value = "fetchAllCreditProcessingStatuses")
-    private ResponseEntity<ControllerStatusResponse> requestAllStates() {
-        List<Map<String, String>> applicationStatus = new ArrayList<>();
-        List<StateAndRef<CreditRatingState>> processingStates = proxy.vaultQuery(CreditRatingState.class).getStates();
-        for (StateAndRef<CreditRatingState> stateRef : processingStates) {
-            CreditRatingState financeState = stateRef.getState().getData();
-            final String creditRatingDesc = financeState.getCreditScoreDesc() == CreditScoreDesc.UNSPECIFIED ? "DECISION_PENDING" : financeState.getCreditScoreDesc().toString();
-            final String creditScores = financeState.getCreditScoreDesc() == CreditScoreDesc.UNSPECIFIED ? "DECISION_PENDING" : financeState.getCreditScoreCheckRating().toString();
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, financeState.getLoanVerificationId().getId().toString());
-                put(ControllerStatusResponse.CREDIT_SCORE, creditScores);
-                put(ControllerStatusResponse.CREDIT_SCORE_DESC, creditRatingDesc);
-            }});
+    @GetMapping(value = "stats", produces = APPLICATION_JSON_VALUE)
+    private ResponseEntity<Object> stats(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            String etag = changeToken.etag(CreditRatingState.class, "stats");
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("countByCreditScoreDesc", VaultAggregates.countByStatus(proxy, CreditRatingState.class,
+                    "creditScoreDesc", LoaningProcessSchemas.PersistentCreditRatingSchema.class, CreditScoreDesc.class));
+            stats.put("loanAmountByCreditScoreDesc", VaultAggregates.sumGroupedBy(proxy, CreditRatingState.class,
+                    "loanAmount", "creditScoreDesc", LoaningProcessSchemas.PersistentCreditRatingSchema.class));
+            stats.put("loanAmountByBusinessType", VaultAggregates.sumGroupedBy(proxy, CreditRatingState.class,
+                    "loanAmount", "businessType", LoaningProcessSchemas.PersistentCreditRatingSchema.class));
+            return VaultChangeToken.ok(stats, etag);
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
+    }
 
-        if (applicationStatus.isEmpty()) {
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.STATUS, "No Credit Check applications found in the system.");
-            }});
-        }
+    @GetMapping(value = "fetchAllCreditProcessingStatuses")
+    private ResponseEntity<Object> requestAllStates(
+            @RequestParam(value = "page", defaultValue = VaultPaging.DEFAULT_PAGE) int page,
+            @RequestParam(value = "pageSize", defaultValue = VaultPaging.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            QueryCriteria criteria = status == null ? new QueryCriteria.VaultQueryCriteria()
+                    : VaultPaging.statusCriteria("creditScoreDesc",
+                    LoaningProcessSchemas.PersistentCreditRatingSchema.class,
+                    Collections.singleton(VaultPaging.parseStatus(CreditScoreDesc.class, status)));
+
+            String etag = changeToken.etag(CreditRatingState.class, "states", status, page, pageSize, sort);
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
 
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(new ControllerStatusResponse(applicationStatus));
+            Vault.Page<CreditRatingState> vaultPage = proxy.vaultQueryBy(criteria,
+                    VaultPaging.pageSpecification(page, pageSize),
+                    VaultPaging.sort(sort, LoaningProcessSchemas.PersistentCreditRatingSchema.class),
+                    CreditRatingState.class);
+
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            for (StateAndRef<CreditRatingState> stateRef : vaultPage.getStates()) {
+                CreditRatingState financeState = stateRef.getState().getData();
+                final String creditRatingDesc = financeState.getCreditScoreDesc() == CreditScoreDesc.UNSPECIFIED ? "DECISION_PENDING" : financeState.getCreditScoreDesc().toString();
+                final String creditScores = financeState.getCreditScoreDesc() == CreditScoreDesc.UNSPECIFIED ? "DECISION_PENDING" : financeState.getCreditScoreCheckRating().toString();
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, financeState.getLoanVerificationId().getId().toString());
+                    put(ControllerStatusResponse.CREDIT_SCORE, creditScores);
+                    put(ControllerStatusResponse.CREDIT_SCORE_DESC, creditRatingDesc);
+                }});
+            }
+
+            if (applicationStatus.isEmpty()) {
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.STATUS, "No Credit Check applications found in the system.");
+                }});
+            }
+
+            return VaultChangeToken.ok(
+                    new PagedStatusResponse(applicationStatus, page, pageSize, vaultPage.getTotalStatesAvailable()), etag);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
+        }
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
     @PostMapping(value = "creditScoreProcessingStatus", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> getStatusOfApplication(@RequestBody ControllerRequest request) {
+    private ResponseEntity<Object> getStatusOfApplication(@RequestBody ControllerRequest request,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         QueryCriteria creditVerficationIdCustomQuery;
         List<Map<String, String>> applicationStatus = new ArrayList<>();
         try {
+            String etag = changeToken.etag(CreditRatingState.class, "status", request.getApplicationID());
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
             creditVerficationIdCustomQuery = new QueryCriteria.VaultCustomQueryCriteria(
                     Builder.equal(QueryCriteriaUtils.getField("loanVerificationId",
                             LoaningProcessSchemas.PersistentCreditRatingSchema.class), UUID.fromString(request.getApplicationID())));
@@ -120,8 +196,7 @@ public class CreditAgencyController {
                     put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, request.getApplicationID());
                     put(ControllerStatusResponse.STATUS, "Input CreditVerificationId doesnt exists in System.");
                 }});
-                return ResponseEntity.status(HttpStatus.OK)
-                        .body(new ControllerStatusResponse(applicationStatus));
+                return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
             } else {
                 CreditScoreDesc scoreDesc = applicationStates.get(0).getState().getData().getCreditScoreDesc();
                 String verificationDescription = scoreDesc == CreditScoreDesc.UNSPECIFIED ? "IN_PROCESSING/PENDING VERIFICATION CHECK" :
@@ -132,8 +207,7 @@ public class CreditAgencyController {
                     put(ControllerStatusResponse.CREDIT_SCORE, creditScore);
                     put(ControllerStatusResponse.CREDIT_SCORE_DESC, verificationDescription);
                 }});
-                return ResponseEntity.status(HttpStatus.OK)
-                        .body(new ControllerStatusResponse(applicationStatus));
+                return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
             }
         } catch (NoSuchFieldException e) {
             e.printStackTrace();
@@ -143,25 +217,74 @@ public class CreditAgencyController {
 
     }
 
-    @PostMapping(value = "initiateCreditCheckProcessing", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> initiateCreditCheckProcessing(@RequestBody ControllerRequest controllerRequest) {
+    @PostMapping(value = "creditScoreProcessingStatuses", produces = "application/json", consumes = "application/json")
+    private ResponseEntity<Object> getStatusOfApplications(@RequestBody ControllerBatchRequest request,
+                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            logger.info("HTTP REQUEST :Initiating CreditCheck processing  for CreditVerificationId : " + controllerRequest.getApplicationID());
-            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            Set<UUID> verificationIds = VaultPaging.parseIds(request.getApplicationIDs());
+            String etag = changeToken.etag(CreditRatingState.class, "statuses", verificationIds.toString());
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            logger.info("HTTP REQUEST : Batch credit check status lookup for " + verificationIds.size() + " CreditVerificationIds");
 
-            CACreditScoreCheckProcessor process = new CACreditScoreCheckProcessor(
-                    new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), proxy);
-            String response = process.processCreditScoreCheck();
-
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, controllerRequest.getApplicationID());
-                put(ControllerStatusResponse.STATUS, response);
-            }});
-            logger.info("HTTP RESPONSE :Credit Check processed with response : " + response);
-            return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
+            Map<UUID, CreditRatingState> statesById = new HashMap<>();
+            for (StateAndRef<CreditRatingState> stateRef : VaultPaging.queryByIds(proxy, CreditRatingState.class,
+                    "loanVerificationId", LoaningProcessSchemas.PersistentCreditRatingSchema.class, verificationIds)) {
+                CreditRatingState creditState = stateRef.getState().getData();
+                statesById.put(creditState.getLoanVerificationId().getId(), creditState);
+            }
+
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            for (UUID verificationId : verificationIds) {
+                CreditRatingState creditState = statesById.get(verificationId);
+                if (creditState == null) {
+                    applicationStatus.add(new HashMap<String, String>() {{
+                        put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, verificationId.toString());
+                        put(ControllerStatusResponse.STATUS, "Input CreditVerificationId doesnt exists in System.");
+                    }});
+                } else {
+                    CreditScoreDesc scoreDesc = creditState.getCreditScoreDesc();
+                    String verificationDescription = scoreDesc == CreditScoreDesc.UNSPECIFIED ? "IN_PROCESSING/PENDING VERIFICATION CHECK" : scoreDesc.toString();
+                    String creditScore = scoreDesc == CreditScoreDesc.UNSPECIFIED ? "NULL/DECISION_PENDING" : creditState.getCreditScoreCheckRating().toString();
+                    applicationStatus.add(new HashMap<String, String>() {{
+                        put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, verificationId.toString());
+                        put(ControllerStatusResponse.CREDIT_SCORE, creditScore);
+                        put(ControllerStatusResponse.CREDIT_SCORE_DESC, verificationDescription);
+                    }});
+                }
+            }
+            return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
     }
+
+    @PostMapping(value = "initiateCreditCheckProcessing", produces = "application/json", consumes = "application/json")
+    private DeferredResult<ResponseEntity<Object>> initiateCreditCheckProcessing(@RequestBody ControllerRequest controllerRequest) {
+        return asyncFlowResponses.supply(() -> {
+            try {
+                logger.info("HTTP REQUEST :Initiating CreditCheck processing  for CreditVerificationId : " + controllerRequest.getApplicationID());
+                List<Map<String, String>> applicationStatus = new ArrayList<>();
+
+                CACreditScoreCheckProcessor process = new CACreditScoreCheckProcessor(
+                        new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), flowProxy,
+                        partyDirectory);
+                String response = process.processCreditScoreCheck();
+
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.STATUS, response);
+                }});
+                logger.info("HTTP RESPONSE :Credit Check processed with response : " + response);
+                return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.xyz.webserver.data;
+
+import java.util.List;
+
+public class ControllerBatchRequest {
+    List<String> applicationIDs;
+
+    public ControllerBatchRequest() {
+
+    }
+
+    public ControllerBatchRequest(List<String> applicationIDs) {
+        this.applicationIDs = applicationIDs;
+    }
+
+    public List<String> getApplicationIDs() {
+        return applicationIDs;
+    }
+
+    public void setApplicationIDs(List<String> applicationIDs) {
+        this.applicationIDs = applicationIDs;
+    }
+}
@@ -10,6 +10,9 @@ public class ControllerStatusResponse {
     public static final String STATUS = "Status";
     public static final String CREDIT_SCORE = "Credit Score";
     public static final String CREDIT_SCORE_DESC = "Credit Score Description";
+    public static final String COMPANY_NAME = "Company Name";
+    public static final String BUSINESS_TYPE = "Business Type";
+    public static final String LOAN_AMOUNT = "Loan Amount";
 
     private List<Map<String, String>> applicationStatuses;
 
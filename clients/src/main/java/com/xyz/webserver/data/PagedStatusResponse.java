@@ -0,0 +1,60 @@
+package com.xyz.webserver.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status listing response for a single vault page. Carries the paging metadata alongside the statuses so that
+ * clients can walk the listing without pulling the whole vault.
+ */
+public class PagedStatusResponse extends ControllerStatusResponse {
+
+    private int page;
+    private int pageSize;
+    private long totalCount;
+    private Integer nextPage;
+
+    public PagedStatusResponse() {
+
+    }
+
+    public PagedStatusResponse(List<Map<String, String>> applicationStatuses, int page, int pageSize, long totalCount) {
+        super(applicationStatuses);
+        this.page = page;
+        this.pageSize = pageSize;
+        this.totalCount = totalCount;
+        this.nextPage = (long) page * pageSize < totalCount ? page + 1 : null;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public Integer getNextPage() {
+        return nextPage;
+    }
+
+    public void setNextPage(Integer nextPage) {
+        this.nextPage = nextPage;
+    }
+}
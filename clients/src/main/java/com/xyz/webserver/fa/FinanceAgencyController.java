@@ -1,31 +1,46 @@
 package com.xyz.webserver.fa;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.flows.fa.LoanApplicationBulkCreationFlow;
 import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.flows.fa.LoanApplicationRequest;
+import com.xyz.observer.ObserverRuntime;
 import com.xyz.observer.fa.FABankFinanceStateObserver;
 import com.xyz.observer.fa.FACreditScoreCheckStateObserver;
 import com.xyz.observer.fa.FALoanApplicationStateObserver;
+import com.xyz.processor.PartyDirectory;
 import com.xyz.processor.fa.FABankProcessInitiationProcessor;
 import com.xyz.processor.fa.FACreditCheckInitiationProcessor;
 import com.xyz.processor.fa.FAPostBankStatusUpdateProcessor;
 import com.xyz.processor.fa.FAPostCreditCheckProcessor;
 import com.xyz.states.LoanApplicationState;
 import com.xyz.states.schema.LoaningProcessSchemas;
+import com.xyz.webserver.data.ControllerBatchRequest;
 import com.xyz.webserver.data.ControllerRequest;
 import com.xyz.webserver.data.ControllerStatusResponse;
 import com.xyz.webserver.data.LoanApplicationData;
 import com.xyz.webserver.data.LoanApplicationException;
+import com.xyz.webserver.data.PagedStatusResponse;
+import com.xyz.webserver.util.AsyncFlowResponses;
+import com.xyz.webserver.util.NodeAutomationCheck;
 import com.xyz.webserver.util.NodeRPCConnection;
+import com.xyz.webserver.util.VaultAggregates;
+import com.xyz.webserver.util.VaultChangeToken;
+import com.xyz.webserver.util.VaultPaging;
 import net.corda.client.jackson.JacksonSupport;
 import net.corda.core.contracts.ContractState;
 import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.TransactionState;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.identity.CordaX500Name;
 import net.corda.core.messaging.CordaRPCOps;
-import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
 import net.corda.core.node.services.vault.QueryCriteria;
 import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
 import net.corda.core.transactions.SignedTransaction;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x500.style.BCStyle;
@@ -34,12 +49,26 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
@@ -47,32 +76,77 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 @RequestMapping("/")
 public class FinanceAgencyController {
     private static final Logger logger = LoggerFactory.getLogger(RestController.class);
+    private static final Set<LoanApplicationStatus> TERMINAL_STATUSES = EnumSet.of(LoanApplicationStatus.LOAN_DISBURSED,
+            LoanApplicationStatus.REJECTED_FROM_BANK, LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED);
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int EXPORT_PAGE_SIZE = 500;
+    private static final ObjectWriter EXPORT_WRITER = new ObjectMapper().writer();
+    private static final int MAX_BULK_APPLICATIONS = 50000;
     private final CordaRPCOps proxy;
+    private final CordaRPCOps flowProxy;
     private final CordaX500Name me;
+    private final LoanApplicationStatusIndex statusIndex;
+    private final AsyncFlowResponses asyncFlowResponses;
+    private final VaultChangeToken changeToken;
+    private final PartyDirectory partyDirectory;
+    private final ObserverRuntime observerRuntime;
+    private final NodeAutomationCheck nodeAutomationCheck;
 
     @Value("${disable.observers}")
     private boolean disableObservers;
 
+    @Value("${loan.bulk.batch-size:500}")
+    private int bulkBatchSize;
+
+    @Value("${loan.bulk.deadline-ms:600000}")
+    private long bulkDeadlineMillis;
+
+    @Value("${loan.export.timeout-ms:3600000}")
+    private long exportTimeoutMillis;
+
+    @Value("${loan.export.threads:2}")
+    private int exportThreads;
+
+    private ExecutorService exportExecutor;
+
     @PostConstruct
     public void init() {
         logger.info("Disable Observers property value : " + disableObservers);
+        exportExecutor = Executors.newFixedThreadPool(exportThreads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "loan-export-" + ++count);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
 
-        if (!disableObservers) {
-            Thread loanObserverThread = new Thread(
-                    () -> new FALoanApplicationStateObserver(proxy).observeLoanApplicationUpdate());
-            Thread creditAgencyResponseObserverThread = new Thread(
-                    () -> new FACreditScoreCheckStateObserver(proxy).observeCreditAgencyResponse());
-            Thread bankStateObserverThread = new Thread(
-                    () -> new FABankFinanceStateObserver(proxy).observeBankFinanceState());
-
-            loanObserverThread.start();
-            creditAgencyResponseObserverThread.start();
-            bankStateObserverThread.start();
+        if (!disableObservers && nodeAutomationCheck.observersAllowed()) {
+            new FALoanApplicationStateObserver(flowProxy, partyDirectory).observeLoanApplicationUpdate(observerRuntime);
+            new FACreditScoreCheckStateObserver(flowProxy).observeCreditAgencyResponse(observerRuntime);
+            new FABankFinanceStateObserver(flowProxy).observeBankFinanceState(observerRuntime);
         }
     }
 
-    public FinanceAgencyController(NodeRPCConnection rpc) {
+    @PreDestroy
+    public void close() {
+        exportExecutor.shutdownNow();
+    }
+
+    public FinanceAgencyController(NodeRPCConnection rpc, LoanApplicationStatusIndex statusIndex,
+                                   AsyncFlowResponses asyncFlowResponses, VaultChangeToken changeToken,
+                                   PartyDirectory partyDirectory, ObserverRuntime observerRuntime,
+                                   NodeAutomationCheck nodeAutomationCheck) {
+        this.partyDirectory = partyDirectory;
+        this.observerRuntime = observerRuntime;
+        this.nodeAutomationCheck = nodeAutomationCheck;
         this.proxy = rpc.getproxy();
+        this.flowProxy = rpc.getFlowProxy();
+        this.changeToken = changeToken;
+        this.statusIndex = statusIndex;
+        this.asyncFlowResponses = asyncFlowResponses;
         this.me = proxy.nodeInfo().getLegalIdentities().get(0).getName();
     }
 
@@ -96,15 +170,15 @@ public class FinanceAgencyController {
     }
 
     @PostMapping(value = "applyForLoan", consumes = "application/json", produces = "application/json")
-    private ResponseEntity<Object> applyForLoan(@RequestBody LoanApplicationData applicationData) {
-        try {
-            logger.info("HTTP REQUEST : Apply for Loan called in Node : " + me.toString());
+    private DeferredResult<ResponseEntity<Object>> applyForLoan(@RequestBody LoanApplicationData applicationData) {
+        logger.info("HTTP REQUEST : Apply for Loan called in Node : " + me.toString());
+        CompletableFuture<SignedTransaction> flowResult = AsyncFlowResponses.startFlow(() -> flowProxy
+                .startFlowDynamic(LoanApplicationCreationFlow.class, applicationData.getBorrowerCompany(),
+                        applicationData.getBorrowerCompany(), applicationData.getLoanAmount())
+                .getReturnValue());
+
+        return asyncFlowResponses.fromFuture(flowResult, tx -> {
             List<Map<String, String>> applicationStatus = new ArrayList<>();
-
-            SignedTransaction tx = proxy
-                    .startTrackedFlowDynamic(LoanApplicationCreationFlow.class, applicationData.getBorrowerCompany(),
-                            applicationData.getBorrowerCompany(), applicationData.getLoanAmount())
-                    .getReturnValue().get();
             ContractState applicationState = tx.getTx().getOutputs().get(0).getData();
             String loanRequestID = ((LoanApplicationState) applicationState).getLoanApplicationId().toString();
             String loanApplicationState = ((LoanApplicationState) applicationState).getApplicationStatus().toString();
@@ -116,226 +190,458 @@ public class FinanceAgencyController {
                 put(ControllerStatusResponse.STATUS, loanApplicationState);
             }});
             return ResponseEntity.status(HttpStatus.CREATED).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
-        }
+        });
     }
 
-    @GetMapping(value = "getAllBankLoanApplicationStatuses")
-    private ResponseEntity<ControllerStatusResponse> requestAllStates() {
-        List<Map<String, String>> applicationStatus = new ArrayList<>();
-        List<StateAndRef<LoanApplicationState>> processingStates = proxy.vaultQuery(LoanApplicationState.class).getStates();
-        for (StateAndRef<LoanApplicationState> stateRef : processingStates) {
-            LoanApplicationState financeState = stateRef.getState().getData();
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.LOAN_APPLICATION_ID, financeState.getLoanApplicationId().getId().toString());
-                put(ControllerStatusResponse.STATUS, financeState.getApplicationStatus().toString());
-            }});
+    /**
+     * Creates the applications in batches of {@code loan.bulk.batch-size}, one transaction per batch. All batches
+     * are started before waiting on any of them, a failed batch is reported on each of its applications without
+     * failing the other batches.
+     */
+    @PostMapping(value = "applyForLoans", consumes = "application/json", produces = "application/json")
+    private DeferredResult<ResponseEntity<Object>> applyForLoans(@RequestBody List<LoanApplicationData> applications) {
+        if (applications == null || applications.isEmpty() || applications.size() > MAX_BULK_APPLICATIONS)
+            return AsyncFlowResponses.completed(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(
+                    "Between 1 and " + MAX_BULK_APPLICATIONS + " Loan applications can be submitted at once")));
+        if (bulkBatchSize < 1 || bulkBatchSize > LoanApplicationBulkCreationFlow.MAX_BATCH_SIZE)
+            return AsyncFlowResponses.completed(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new LoanApplicationException(
+                    "loan.bulk.batch-size shall be between 1 and " + LoanApplicationBulkCreationFlow.MAX_BATCH_SIZE)));
+
+        logger.info("HTTP REQUEST : Bulk apply for " + applications.size() + " Loans called in Node : " + me.toString());
+        List<CompletableFuture<List<Map<String, String>>>> batchStatuses = new ArrayList<>();
+        for (int from = 0; from < applications.size(); from += bulkBatchSize) {
+            List<LoanApplicationData> batch = applications.subList(from, Math.min(from + bulkBatchSize, applications.size()));
+            List<LoanApplicationRequest> requests = new ArrayList<>(batch.size());
+            for (LoanApplicationData applicationData : batch) {
+                requests.add(new LoanApplicationRequest(applicationData.getBorrowerCompany(),
+                        applicationData.getBorrowerBusinessType(), applicationData.getLoanAmount()));
+            }
+            batchStatuses.add(AsyncFlowResponses.startFlow(() -> flowProxy
+                    .startFlowDynamic(LoanApplicationBulkCreationFlow.class, requests).getReturnValue())
+                    .handle((tx, error) -> bulkBatchStatus(batch, tx, error)));
         }
 
-        if (applicationStatus.isEmpty()) {
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.STATUS, "No applications found in the system");
-            }});
-        }
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(new ControllerStatusResponse(applicationStatus));
+        CompletableFuture<Void> allBatches = CompletableFuture.allOf(batchStatuses.toArray(new CompletableFuture[0]));
+        return asyncFlowResponses.fromFuture(allBatches, bulkDeadlineMillis, done -> {
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            batchStatuses.forEach(batchStatus -> applicationStatus.addAll(batchStatus.join()));
+            long created = applicationStatus.stream()
+                    .filter(status -> status.containsKey(ControllerStatusResponse.LOAN_APPLICATION_ID)).count();
+            logger.info("HTTP RESPONSE : Bulk Loan applications created : " + created + " of " + applications.size()
+                    + " in " + batchStatuses.size() + " transactions");
+            HttpStatus status = created == applications.size() ? HttpStatus.CREATED
+                    : created == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.MULTI_STATUS;
+            return ResponseEntity.status(status).body(new ControllerStatusResponse(applicationStatus));
+        });
     }
 
-    @GetMapping(value = "getAllBankLoanPendingStatuses")
-    private ResponseEntity<ControllerStatusResponse> getAllBankLoanPendingStatuses() {
+    private List<Map<String, String>> bulkBatchStatus(List<LoanApplicationData> batch, SignedTransaction tx,
+                                                      Throwable error) {
         List<Map<String, String>> applicationStatus = new ArrayList<>();
-        List<StateAndRef<LoanApplicationState>> processingStates = proxy.vaultQuery(LoanApplicationState.class).getStates();
-        for (StateAndRef<LoanApplicationState> stateRef : processingStates) {
-            LoanApplicationState financeState = stateRef.getState().getData();
-            if (financeState.getApplicationStatus() != LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED || financeState.getApplicationStatus() != LoanApplicationStatus.LOAN_DISBURSED) {
+        if (error != null) {
+            logger.error("Bulk Loan application batch of " + batch.size() + " failed", error);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            final String failure = "FAILED : " + cause.getMessage();
+            for (LoanApplicationData applicationData : batch) {
                 applicationStatus.add(new HashMap<String, String>() {{
-                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, financeState.getLoanApplicationId().getId().toString());
-                    put(ControllerStatusResponse.STATUS, financeState.getApplicationStatus().toString());
+                    put(ControllerStatusResponse.COMPANY_NAME, applicationData.getBorrowerCompany());
+                    put(ControllerStatusResponse.STATUS, failure);
                 }});
             }
+            return applicationStatus;
         }
-
-        if (applicationStatus.isEmpty()) {
+        for (TransactionState<ContractState> output : tx.getTx().getOutputs()) {
+            LoanApplicationState applicationState = (LoanApplicationState) output.getData();
             applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.STATUS, "No Pending/In-Processing applications found in the system");
+                put(ControllerStatusResponse.LOAN_APPLICATION_ID, applicationState.getLoanApplicationId().toString());
+                put(ControllerStatusResponse.COMPANY_NAME, applicationState.getCompanyName());
+                put(ControllerStatusResponse.STATUS, applicationState.getApplicationStatus().toString());
             }});
         }
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(new ControllerStatusResponse(applicationStatus));
+        return applicationStatus;
+    }
+
+    @GetMapping(value = "stats", produces = APPLICATION_JSON_VALUE)
+    private ResponseEntity<Object> stats(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            String etag = changeToken.etag(LoanApplicationState.class, "stats");
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("countByApplicationStatus", VaultAggregates.countByStatus(proxy, LoanApplicationState.class,
+                    "applicationStatus", LoaningProcessSchemas.PersistentLoanApplicationState.class,
+                    LoanApplicationStatus.class));
+            stats.put("loanAmountByApplicationStatus", VaultAggregates.sumGroupedBy(proxy, LoanApplicationState.class,
+                    "loanAmount", "applicationStatus", LoaningProcessSchemas.PersistentLoanApplicationState.class));
+            stats.put("loanAmountByBusinessType", VaultAggregates.sumGroupedBy(proxy, LoanApplicationState.class,
+                    "loanAmount", "businessType", LoaningProcessSchemas.PersistentLoanApplicationState.class));
+            return VaultChangeToken.ok(stats, etag);
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "getAllBankLoanApplicationStatuses")
+    private ResponseEntity<Object> requestAllStates(
+            @RequestParam(value = "page", defaultValue = VaultPaging.DEFAULT_PAGE) int page,
+            @RequestParam(value = "pageSize", defaultValue = VaultPaging.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return fetchLoanApplicationPage(EnumSet.allOf(LoanApplicationStatus.class), status, page, pageSize, sort,
+                "No applications found in the system", ifNoneMatch);
+    }
+
+    @GetMapping(value = "getAllBankLoanPendingStatuses")
+    private ResponseEntity<Object> getAllBankLoanPendingStatuses(
+            @RequestParam(value = "page", defaultValue = VaultPaging.DEFAULT_PAGE) int page,
+            @RequestParam(value = "pageSize", defaultValue = VaultPaging.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return fetchLoanApplicationPage(EnumSet.complementOf(TERMINAL_STATUSES), status, page, pageSize, sort,
+                "No Pending/In-Processing applications found in the system", ifNoneMatch);
     }
 
     @GetMapping(value = "getAllBankLoanProcessedStatuses")
-    private ResponseEntity<ControllerStatusResponse> getAllBankLoanProcessedStatuses() {
-        List<Map<String, String>> applicationStatus = new ArrayList<>();
-        List<StateAndRef<LoanApplicationState>> processingStates = proxy.vaultQuery(LoanApplicationState.class).getStates();
-        for (StateAndRef<LoanApplicationState> stateRef : processingStates) {
-            LoanApplicationState financeState = stateRef.getState().getData();
-            if (financeState.getApplicationStatus() == LoanApplicationStatus.LOAN_DISBURSED) {
+    private ResponseEntity<Object> getAllBankLoanProcessedStatuses(
+            @RequestParam(value = "page", defaultValue = VaultPaging.DEFAULT_PAGE) int page,
+            @RequestParam(value = "pageSize", defaultValue = VaultPaging.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return fetchLoanApplicationPage(EnumSet.of(LoanApplicationStatus.LOAN_DISBURSED), status, page, pageSize,
+                sort, "No Processed/Disbursed applications found in the system", ifNoneMatch);
+    }
+
+    @GetMapping(value = "getAllBankLoanDeclinedStatuses")
+    private ResponseEntity<Object> getAllBankLoanDeclinedStatuses(
+            @RequestParam(value = "page", defaultValue = VaultPaging.DEFAULT_PAGE) int page,
+            @RequestParam(value = "pageSize", defaultValue = VaultPaging.DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return fetchLoanApplicationPage(
+                EnumSet.of(LoanApplicationStatus.REJECTED_FROM_BANK, LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED),
+                status, page, pageSize, sort, "No Declined/Rejected applications found in the system", ifNoneMatch);
+    }
+
+    /**
+     * Queries one page of LoanApplicationStates restricted to the statuses served by the calling endpoint, or to
+     * the single requested status when one is passed.
+     */
+    private ResponseEntity<Object> fetchLoanApplicationPage(Set<LoanApplicationStatus> endpointStatuses, String status,
+                                                            int page, int pageSize, String sort, String emptyMessage,
+                                                            String ifNoneMatch) {
+        try {
+            Set<LoanApplicationStatus> statuses = endpointStatuses;
+            if (status != null) {
+                LoanApplicationStatus requestedStatus = VaultPaging.parseStatus(LoanApplicationStatus.class, status);
+                if (!endpointStatuses.contains(requestedStatus))
+                    throw new IllegalArgumentException("Status " + requestedStatus + " is not served by this listing");
+                statuses = EnumSet.of(requestedStatus);
+            }
+            String etag = changeToken.etag(LoanApplicationState.class, "applications", statuses.toString(), page,
+                    pageSize, sort);
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            QueryCriteria criteria = statuses.size() == LoanApplicationStatus.values().length
+                    ? new QueryCriteria.VaultQueryCriteria()
+                    : VaultPaging.statusCriteria("applicationStatus",
+                    LoaningProcessSchemas.PersistentLoanApplicationState.class, statuses);
+
+            Vault.Page<LoanApplicationState> vaultPage = proxy.vaultQueryBy(criteria,
+                    VaultPaging.pageSpecification(page, pageSize),
+                    VaultPaging.sort(sort, LoaningProcessSchemas.PersistentLoanApplicationState.class),
+                    LoanApplicationState.class);
+
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            for (StateAndRef<LoanApplicationState> stateRef : vaultPage.getStates()) {
+                LoanApplicationState financeState = stateRef.getState().getData();
                 applicationStatus.add(new HashMap<String, String>() {{
                     put(ControllerStatusResponse.LOAN_APPLICATION_ID, financeState.getLoanApplicationId().getId().toString());
                     put(ControllerStatusResponse.STATUS, financeState.getApplicationStatus().toString());
                 }});
             }
+
+            if (applicationStatus.isEmpty()) {
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.STATUS, emptyMessage);
+                }});
+            }
+            return VaultChangeToken.ok(
+                    new PagedStatusResponse(applicationStatus, page, pageSize, vaultPage.getTotalStatesAvailable()), etag);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
+    }
 
-        if (applicationStatus.isEmpty()) {
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.STATUS, "No Processed/Disbursed applications found in the system");
-            }});
+    @GetMapping(value = "export/applications")
+    private ResponseEntity<ResponseBodyEmitter> exportApplications(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "status", required = false) String status) {
+        if (!"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON)
+                    .body(errorBody("Unsupported export format : " + format + ", supported formats : ndjson"));
         }
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(new ControllerStatusResponse(applicationStatus));
+        final Instant snapshot = proxy.currentNodeTime();
+        final QueryCriteria criteria;
+        try {
+            QueryCriteria snapshotCriteria = VaultPaging.snapshotAt(snapshot);
+            criteria = status == null ? snapshotCriteria
+                    : snapshotCriteria.and(VaultPaging.statusCriteria("applicationStatus",
+                    LoaningProcessSchemas.PersistentLoanApplicationState.class,
+                    Collections.singleton(VaultPaging.parseStatus(LoanApplicationStatus.class, status)),
+                    Vault.StateStatus.ALL));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON)
+                    .body(errorBody(e.getMessage()));
+        } catch (NoSuchFieldException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON)
+                    .body(errorBody(e.getMessage()));
+        }
+        logger.info("HTTP REQUEST : Exporting Loan applications as NDJSON with status filter : " + status
+                + " as of " + snapshot);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(exportTimeoutMillis);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        emitter.onTimeout(() -> {
+            timedOut.set(true);
+            logger.warn("Export of Loan applications as of " + snapshot + " did not complete within "
+                    + exportTimeoutMillis + " ms");
+        });
+        exportExecutor.execute(() -> {
+            try {
+                writeLoanApplications(criteria, snapshot, emitter, timedOut);
+                emitter.complete();
+            } catch (Exception e) {
+                logger.error("Export of Loan applications as of " + snapshot + " failed", e);
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(emitter);
     }
 
-    @GetMapping(value = "getAllBankLoanDeclinedStatuses")
-    private ResponseEntity<ControllerStatusResponse> getAllBankLoanDeclinedStatuses() {
-        List<Map<String, String>> applicationStatus = new ArrayList<>();
-        List<StateAndRef<LoanApplicationState>> processingStates = proxy.vaultQuery(LoanApplicationState.class).getStates();
-        for (StateAndRef<LoanApplicationState> stateRef : processingStates) {
-            LoanApplicationState financeState = stateRef.getState().getData();
-            if (financeState.getApplicationStatus() == LoanApplicationStatus.REJECTED_FROM_BANK || financeState.getApplicationStatus() == LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED) {
-                applicationStatus.add(new HashMap<String, String>() {{
-                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, financeState.getLoanApplicationId().getId().toString());
-                    put(ControllerStatusResponse.STATUS, financeState.getApplicationStatus().toString());
-                }});
+    /**
+     * Walks the vault one page at a time and sends every LoanApplicationState of the page as one JSON line, so only
+     * a single page is ever held in memory regardless of the number of applications in the vault. The criteria pin
+     * the states recorded by the snapshot, so the pages neither skip nor repeat an application that moves on while
+     * the export is running, and the states consumed before the snapshot are left out of the export.
+     */
+    private void writeLoanApplications(QueryCriteria criteria, Instant snapshot, ResponseBodyEmitter emitter,
+                                       AtomicBoolean timedOut) throws IOException {
+        Sort sort = VaultPaging.sort(null, LoaningProcessSchemas.PersistentLoanApplicationState.class);
+        MediaType ndjson = MediaType.parseMediaType(NDJSON_VALUE);
+        long read = 0;
+        long exported = 0;
+        long totalStates;
+        int pageNumber = QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+        do {
+            Vault.Page<LoanApplicationState> vaultPage = proxy.vaultQueryBy(criteria,
+                    new PageSpecification(pageNumber, EXPORT_PAGE_SIZE), sort, LoanApplicationState.class);
+            totalStates = vaultPage.getTotalStatesAvailable();
+            if (vaultPage.getStates().isEmpty() || timedOut.get())
+                break;
+
+            ByteArrayOutputStream pageBytes = new ByteArrayOutputStream();
+            for (int i = 0; i < vaultPage.getStates().size(); i++) {
+                if (!VaultPaging.isLiveAt(vaultPage.getStatesMetadata().get(i), snapshot))
+                    continue;
+                LoanApplicationState applicationState = vaultPage.getStates().get(i).getState().getData();
+                Map<String, String> row = new LinkedHashMap<>();
+                row.put(ControllerStatusResponse.LOAN_APPLICATION_ID, applicationState.getLoanApplicationId().getId().toString());
+                row.put(ControllerStatusResponse.STATUS, applicationState.getApplicationStatus().toString());
+                row.put(ControllerStatusResponse.COMPANY_NAME, applicationState.getCompanyName());
+                row.put(ControllerStatusResponse.BUSINESS_TYPE, applicationState.getBusinessType());
+                row.put(ControllerStatusResponse.LOAN_AMOUNT, String.valueOf(applicationState.getLoanAmount()));
+                row.put(ControllerStatusResponse.CREDIT_CHECK_VERIFICATION_ID, applicationState.getLoanVerificationId() == null
+                        ? null : applicationState.getLoanVerificationId().getId().toString());
+                row.put(ControllerStatusResponse.BANK_PROCESSING_ID, applicationState.getBankProcessingId() == null
+                        ? null : applicationState.getBankProcessingId().getId().toString());
+                pageBytes.write(EXPORT_WRITER.writeValueAsBytes(row));
+                pageBytes.write('\n');
+                exported++;
             }
+            if (pageBytes.size() > 0)
+                emitter.send(pageBytes.toByteArray(), ndjson);
+            read += vaultPage.getStates().size();
+            pageNumber++;
+        } while (read < totalStates);
+        logger.info("HTTP RESPONSE : Exported " + exported + " Loan applications as NDJSON");
+    }
+
+    private ResponseBodyEmitter errorBody(String message) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        try {
+            emitter.send(new LoanApplicationException(message), MediaType.APPLICATION_JSON);
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
         }
+        return emitter;
+    }
 
-        if (applicationStatus.isEmpty()) {
+    @PostMapping(value = "statusOfApplication", produces = "application/json", consumes = "application/json")
+    private ResponseEntity<Object> getStatusOfApplication(@RequestBody ControllerRequest controllerRequest,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        List<Map<String, String>> applicationStatus = new ArrayList<>();
+        try {
+            String etag = changeToken.etag(LoanApplicationState.class, "status", controllerRequest.getApplicationID());
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            LoanApplicationStatus status = statusIndex.getStatus(UUID.fromString(controllerRequest.getApplicationID()));
+            final String loanApplicationStatus = status == null ? "Input LoanApplicationID doesnt exists in System."
+                    : status.toString();
             applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.STATUS, "No Declined/Rejected applications found in the system");
+                put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
+                put(ControllerStatusResponse.STATUS, loanApplicationStatus);
             }});
+            return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new LoanApplicationException(e.getMessage()));
         }
-        return ResponseEntity.status(HttpStatus.OK)
-                .body(new ControllerStatusResponse(applicationStatus));
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    @PostMapping(value = "statusOfApplication", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> getStatusOfApplication(@RequestBody ControllerRequest controllerRequest) {
-        QueryCriteria loanApplicationIdCustomQuery;
-        List<Map<String, String>> applicationStatus = null;
+    @PostMapping(value = "statusOfApplications", produces = "application/json", consumes = "application/json")
+    private ResponseEntity<Object> getStatusOfApplications(@RequestBody ControllerBatchRequest batchRequest,
+                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            loanApplicationIdCustomQuery = new QueryCriteria.VaultCustomQueryCriteria(
-                    Builder.equal(QueryCriteriaUtils.getField("loanApplicationId",
-                            LoaningProcessSchemas.PersistentLoanApplicationState.class), UUID.fromString(controllerRequest.getApplicationID())));
-            List<StateAndRef<LoanApplicationState>> applicationStates = proxy
-                    .vaultQueryByCriteria(loanApplicationIdCustomQuery, LoanApplicationState.class).getStates();
-
-            if (applicationStates == null || applicationStates.size() == 0) {
-                applicationStatus = new ArrayList<>();
-                applicationStatus.add(new HashMap<String, String>() {{
-                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
-                    put(ControllerStatusResponse.STATUS, "Input LoanApplicationID doesnt exists in System.");
-                }});
-                return ResponseEntity.status(HttpStatus.OK)
-                        .body(new ControllerStatusResponse(applicationStatus));
-            } else {
-                final String loanApplicationStatus = applicationStates.get(0).getState().getData().getApplicationStatus().toString();
-                applicationStatus = new ArrayList<>();
+            Set<UUID> applicationIds = VaultPaging.parseIds(batchRequest.getApplicationIDs());
+            String etag = changeToken.etag(LoanApplicationState.class, "statuses", applicationIds.toString());
+            if (VaultChangeToken.isNotModified(ifNoneMatch, etag))
+                return VaultChangeToken.notModified(etag);
+            logger.info("HTTP REQUEST : Batch status lookup for " + applicationIds.size() + " Loan applications");
+
+            Map<UUID, LoanApplicationStatus> statuses = statusIndex.getStatuses(applicationIds);
+            List<Map<String, String>> applicationStatus = new ArrayList<>();
+            for (UUID applicationId : applicationIds) {
+                LoanApplicationStatus status = statuses.get(applicationId);
+                final String loanApplicationStatus = status == null ? "Input LoanApplicationID doesnt exists in System."
+                        : status.toString();
                 applicationStatus.add(new HashMap<String, String>() {{
-                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, applicationId.toString());
                     put(ControllerStatusResponse.STATUS, loanApplicationStatus);
                 }});
-                return ResponseEntity.status(HttpStatus.OK)
-                        .body(new ControllerStatusResponse(applicationStatus));
             }
+            return VaultChangeToken.ok(new ControllerStatusResponse(applicationStatus), etag);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
         } catch (NoSuchFieldException e) {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new LoanApplicationException(e.getMessage()));
         }
-
     }
 
+    @GetMapping(value = "statusIndexStatistics", produces = APPLICATION_JSON_VALUE)
+    private Map<String, Object> statusIndexStatistics() {
+        return statusIndex.getStatistics();
+    }
 
     @PostMapping(value = "initiateCreditCheck", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> initiateCreditCheckVerification(@RequestBody ControllerRequest controllerRequest) {
-        try {
-            logger.info("HTTP REQUEST :Initiating Credit Check Verification for LoanApplicationId : " + controllerRequest.getApplicationID());
-            List<Map<String, String>> applicationStatus = new ArrayList<>();
+    private DeferredResult<ResponseEntity<Object>> initiateCreditCheckVerification(@RequestBody ControllerRequest controllerRequest) {
+        return asyncFlowResponses.supply(() -> {
+            try {
+                logger.info("HTTP REQUEST :Initiating Credit Check Verification for LoanApplicationId : " + controllerRequest.getApplicationID());
+                List<Map<String, String>> applicationStatus = new ArrayList<>();
 
-            FACreditCheckInitiationProcessor process = new FACreditCheckInitiationProcessor(
-                    new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), proxy);
-            String response = process.processCreditCheckInitiation();
+                FACreditCheckInitiationProcessor process = new FACreditCheckInitiationProcessor(
+                        new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), flowProxy,
+                        partyDirectory);
+                String response = process.processCreditCheckInitiation();
 
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
-                put(ControllerStatusResponse.STATUS, response);
-            }});
-            logger.info("HTTP RESPONSE : Credit check initiation processed with Response : " + response);
-            return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
-        }
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.STATUS, response);
+                }});
+                logger.info("HTTP RESPONSE : Credit check initiation processed with Response : " + response);
+                return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+            }
+        });
     }
 
     @PostMapping(value = "processCreditCheckResponse", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> processCreditCheckResponse(@RequestBody ControllerRequest controllerRequest) {
-        try {
-            logger.info("HTTP REQUEST :Initiating Credit Check Response for LoanApplicationId : " + controllerRequest.getApplicationID());
-            List<Map<String, String>> applicationStatus = new ArrayList<>();
+    private DeferredResult<ResponseEntity<Object>> processCreditCheckResponse(@RequestBody ControllerRequest controllerRequest) {
+        return asyncFlowResponses.supply(() -> {
+            try {
+                logger.info("HTTP REQUEST :Initiating Credit Check Response for LoanApplicationId : " + controllerRequest.getApplicationID());
+                List<Map<String, String>> applicationStatus = new ArrayList<>();
 
-            FAPostCreditCheckProcessor process = new FAPostCreditCheckProcessor(null,
-                    new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), proxy, null);
-            String response = process.processCreditScores();
+                FAPostCreditCheckProcessor process = new FAPostCreditCheckProcessor(null,
+                        new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), flowProxy, null);
+                String response = process.processCreditScores();
 
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
-                put(ControllerStatusResponse.STATUS, response);
-            }});
-            logger.info("HTTP RESPONSE : Credit check Response processed with message : " + response);
-            return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
-        }
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.STATUS, response);
+                }});
+                logger.info("HTTP RESPONSE : Credit check Response processed with message : " + response);
+                return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+            }
+        });
     }
 
     @PostMapping(value = "initiateBankProcessing", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> initiateBankProcessing(@RequestBody ControllerRequest controllerRequest) {
-        try {
-            logger.info("HTTP REQUEST :Initiating Bank processing for LoanApplicationId : " + controllerRequest.getApplicationID());
-            List<Map<String, String>> applicationStatus = new ArrayList<>();
+    private DeferredResult<ResponseEntity<Object>> initiateBankProcessing(@RequestBody ControllerRequest controllerRequest) {
+        return asyncFlowResponses.supply(() -> {
+            try {
+                logger.info("HTTP REQUEST :Initiating Bank processing for LoanApplicationId : " + controllerRequest.getApplicationID());
+                List<Map<String, String>> applicationStatus = new ArrayList<>();
 
-            FABankProcessInitiationProcessor process = new FABankProcessInitiationProcessor(
-                    new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), proxy);
-            String response = process.processBankInitiation();
+                FABankProcessInitiationProcessor process = new FABankProcessInitiationProcessor(
+                        new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), flowProxy,
+                        partyDirectory);
+                String response = process.processBankInitiation();
 
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
-                put(ControllerStatusResponse.STATUS, response);
-            }});
-            logger.info("HTTP RESPONSE : Bank Processing finished with message : " + response);
-            return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
-        }
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.STATUS, response);
+                }});
+                logger.info("HTTP RESPONSE : Bank Processing finished with message : " + response);
+                return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+            }
+        });
     }
 
     @PostMapping(value = "processBankProcessingResponse", produces = "application/json", consumes = "application/json")
-    private ResponseEntity<Object> processBankProcessingResponse(@RequestBody ControllerRequest controllerRequest) {
-        try {
-            logger.info("HTTP REQUEST :Processing Bank response update for LoanApplicationId : " + controllerRequest.getApplicationID());
-            List<Map<String, String>> applicationStatus = new ArrayList<>();
+    private DeferredResult<ResponseEntity<Object>> processBankProcessingResponse(@RequestBody ControllerRequest controllerRequest) {
+        return asyncFlowResponses.supply(() -> {
+            try {
+                logger.info("HTTP REQUEST :Processing Bank response update for LoanApplicationId : " + controllerRequest.getApplicationID());
+                List<Map<String, String>> applicationStatus = new ArrayList<>();
 
-            FAPostBankStatusUpdateProcessor process = new FAPostBankStatusUpdateProcessor(null,
-                    new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), proxy, null);
-            String response = process.processBankFinanceProcessingUpdate();
+                FAPostBankStatusUpdateProcessor process = new FAPostBankStatusUpdateProcessor(null,
+                        new UniqueIdentifier(null, UUID.fromString(controllerRequest.getApplicationID())), flowProxy, null);
+                String response = process.processBankFinanceProcessingUpdate();
 
-            applicationStatus.add(new HashMap<String, String>() {{
-                put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
-                put(ControllerStatusResponse.STATUS, response);
-            }});
-            logger.info("HTTP RESPONSE : Bank Response update processed with message : " + response);
-            return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
-        }
+                applicationStatus.add(new HashMap<String, String>() {{
+                    put(ControllerStatusResponse.LOAN_APPLICATION_ID, controllerRequest.getApplicationID());
+                    put(ControllerStatusResponse.STATUS, response);
+                }});
+                logger.info("HTTP RESPONSE : Bank Response update processed with message : " + response);
+                return ResponseEntity.status(HttpStatus.OK).body(new ControllerStatusResponse(applicationStatus));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new LoanApplicationException(e.getMessage()));
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,247 @@
+package com.xyz.webserver.fa;
+
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.states.LoanApplicationState;
+import com.xyz.states.schema.LoaningProcessSchemas;
+import com.xyz.webserver.util.NodeRPCConnection;
+import com.xyz.webserver.util.VaultPaging;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.FieldInfo;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import rx.Subscription;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through index of the current status of every Loan application, keyed by the loanApplicationId UUID.
+ *
+ * The index is loaded from the snapshot of a vault track on LoanApplicationState and kept current from its update
+ * stream. Applications still in flight are held in an unbounded active tier; applications that reached a terminal
+ * status are moved to a bounded LRU tier. Lookups not served from either tier fall back to a vault query, as do all
+ * lookups while the index is loading or after its feed failed.
+ */
+@Component
+public class LoanApplicationStatusIndex {
+    private static final Logger logger = LoggerFactory.getLogger(LoanApplicationStatusIndex.class);
+    private static final Set<LoanApplicationStatus> TERMINAL_STATUSES = EnumSet.of(LoanApplicationStatus.LOAN_DISBURSED,
+            LoanApplicationStatus.REJECTED_FROM_BANK, LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED);
+    private static final int SNAPSHOT_PAGE_SIZE = 1000;
+
+    private final CordaRPCOps proxy;
+    private final CordaRPCOps feedProxy;
+    private final Map<UUID, IndexEntry> activeStatuses = new ConcurrentHashMap<>();
+    private final Map<UUID, IndexEntry> terminalStatuses;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong terminalEvictions = new AtomicLong();
+
+    private volatile boolean ready = false;
+    private Subscription updateSubscription;
+
+    public LoanApplicationStatusIndex(NodeRPCConnection rpc,
+                                      @Value("${status.index.terminal-capacity:100000}") int terminalCapacity) {
+        this.proxy = rpc.getproxy();
+        this.feedProxy = rpc.getFeedProxy();
+        this.terminalStatuses = Collections.synchronizedMap(new LinkedHashMap<UUID, IndexEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, IndexEntry> eldest) {
+                boolean evict = size() > terminalCapacity;
+                if (evict)
+                    terminalEvictions.incrementAndGet();
+                return evict;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        Thread loaderThread = new Thread(this::load, "loan-status-index-loader");
+        loaderThread.setDaemon(true);
+        loaderThread.start();
+    }
+
+    private void load() {
+        try {
+            // Terminal applications are only indexed once they are looked up, the snapshot loads the in-flight ones.
+            QueryCriteria activeCriteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.notIn(
+                    applicationStatusField(), TERMINAL_STATUSES.stream().map(Enum::name).collect(Collectors.toList())));
+            Sort sort = VaultPaging.sort(null, LoaningProcessSchemas.PersistentLoanApplicationState.class);
+
+            DataFeed<Vault.Page<LoanApplicationState>, Vault.Update<LoanApplicationState>> dataFeed = feedProxy.vaultTrackBy(
+                    activeCriteria, new PageSpecification(QueryCriteriaUtils.DEFAULT_PAGE_NUM, SNAPSHOT_PAGE_SIZE),
+                    sort, LoanApplicationState.class);
+            updateSubscription = dataFeed.getUpdates().subscribe(this::onUpdate, error -> {
+                ready = false;
+                logger.error("Loan application status feed failed, serving statuses from the vault", error);
+            });
+
+            Vault.Page<LoanApplicationState> snapshotPage = dataFeed.getSnapshot();
+            int pageNumber = QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+            long loaded = 0;
+            while (true) {
+                snapshotPage.getStates().forEach(this::putIfAbsent);
+                loaded += snapshotPage.getStates().size();
+                if (snapshotPage.getStates().isEmpty() || loaded >= snapshotPage.getTotalStatesAvailable())
+                    break;
+                snapshotPage = proxy.vaultQueryBy(activeCriteria, new PageSpecification(++pageNumber, SNAPSHOT_PAGE_SIZE),
+                        sort, LoanApplicationState.class);
+            }
+            ready = true;
+            logger.info("Loan application status index loaded with " + loaded + " in-flight applications");
+        } catch (Exception e) {
+            logger.error("Loan application status index could not be loaded, serving statuses from the vault", e);
+        }
+    }
+
+    private void onUpdate(Vault.Update<LoanApplicationState> update) {
+        update.getConsumed().forEach(stateAndRef -> {
+            UUID applicationId = stateAndRef.getState().getData().getLoanApplicationId().getId();
+            IndexEntry entry = activeStatuses.get(applicationId);
+            if (entry != null && entry.stateRef.equals(stateAndRef.getRef()))
+                activeStatuses.remove(applicationId, entry);
+        });
+        update.getProduced().forEach(stateAndRef -> {
+            IndexEntry entry = new IndexEntry(stateAndRef);
+            UUID applicationId = stateAndRef.getState().getData().getLoanApplicationId().getId();
+            if (TERMINAL_STATUSES.contains(entry.status)) {
+                activeStatuses.remove(applicationId);
+                terminalStatuses.put(applicationId, entry);
+            } else {
+                activeStatuses.put(applicationId, entry);
+            }
+        });
+    }
+
+    /**
+     * Snapshot and read-through results never replace an entry already in the index, as the update stream always
+     * carries a status at least as recent as the one a concurrent vault query returned.
+     */
+    private void putIfAbsent(StateAndRef<LoanApplicationState> stateAndRef) {
+        IndexEntry entry = new IndexEntry(stateAndRef);
+        UUID applicationId = stateAndRef.getState().getData().getLoanApplicationId().getId();
+        if (TERMINAL_STATUSES.contains(entry.status))
+            terminalStatuses.putIfAbsent(applicationId, entry);
+        else if (!terminalStatuses.containsKey(applicationId))
+            activeStatuses.putIfAbsent(applicationId, entry);
+    }
+
+    /**
+     * Returns the current status of the Loan application, or null if the application does not exist.
+     */
+    public LoanApplicationStatus getStatus(UUID loanApplicationId) {
+        if (ready) {
+            IndexEntry entry = activeStatuses.get(loanApplicationId);
+            if (entry == null)
+                entry = terminalStatuses.get(loanApplicationId);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.status;
+            }
+        }
+        misses.incrementAndGet();
+
+        List<StateAndRef<LoanApplicationState>> applicationStates = proxy.vaultQueryByCriteria(
+                new QueryCriteria.VaultCustomQueryCriteria(Builder.equal(loanApplicationIdField(), loanApplicationId)),
+                LoanApplicationState.class).getStates();
+        if (applicationStates == null || applicationStates.isEmpty())
+            return null;
+        if (ready)
+            putIfAbsent(applicationStates.get(0));
+        return applicationStates.get(0).getState().getData().getApplicationStatus();
+    }
+
+    /**
+     * Batch variant of {@link #getStatus(UUID)}. Applications missing from the index are resolved together with
+     * chunked {@code IN} queries; applications that do not exist are absent from the returned map.
+     */
+    public Map<UUID, LoanApplicationStatus> getStatuses(Collection<UUID> loanApplicationIds) throws NoSuchFieldException {
+        Map<UUID, LoanApplicationStatus> statuses = new HashMap<>();
+        List<UUID> unindexedIds = new ArrayList<>();
+        for (UUID loanApplicationId : loanApplicationIds) {
+            IndexEntry entry = null;
+            if (ready) {
+                entry = activeStatuses.get(loanApplicationId);
+                if (entry == null)
+                    entry = terminalStatuses.get(loanApplicationId);
+            }
+            if (entry != null)
+                statuses.put(loanApplicationId, entry.status);
+            else
+                unindexedIds.add(loanApplicationId);
+        }
+        hits.addAndGet(statuses.size());
+        misses.addAndGet(unindexedIds.size());
+
+        if (!unindexedIds.isEmpty()) {
+            for (StateAndRef<LoanApplicationState> stateAndRef : VaultPaging.queryByIds(proxy, LoanApplicationState.class,
+                    "loanApplicationId", LoaningProcessSchemas.PersistentLoanApplicationState.class, unindexedIds)) {
+                LoanApplicationState applicationState = stateAndRef.getState().getData();
+                statuses.put(applicationState.getLoanApplicationId().getId(), applicationState.getApplicationStatus());
+                if (ready)
+                    putIfAbsent(stateAndRef);
+            }
+        }
+        return statuses;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("ready", ready);
+        statistics.put("hits", hits.get());
+        statistics.put("misses", misses.get());
+        statistics.put("activeEntries", activeStatuses.size());
+        statistics.put("terminalEntries", terminalStatuses.size());
+        statistics.put("terminalEvictions", terminalEvictions.get());
+        return statistics;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (updateSubscription != null)
+            updateSubscription.unsubscribe();
+    }
+
+    private static FieldInfo applicationStatusField() {
+        return field("applicationStatus");
+    }
+
+    private static FieldInfo loanApplicationIdField() {
+        return field("loanApplicationId");
+    }
+
+    private static FieldInfo field(String fieldName) {
+        try {
+            return QueryCriteriaUtils.getField(fieldName, LoaningProcessSchemas.PersistentLoanApplicationState.class);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Field name " + fieldName
+                    + " does not exist in PersistentLoanApplicationState class , " + e.getMessage());
+        }
+    }
+
+    private static class IndexEntry {
+        private final StateRef stateRef;
+        private final LoanApplicationStatus status;
+
+        private IndexEntry(StateAndRef<LoanApplicationState> stateAndRef) {
+            this.stateRef = stateAndRef.getRef();
+            this.status = stateAndRef.getState().getData().getApplicationStatus();
+        }
+    }
+}
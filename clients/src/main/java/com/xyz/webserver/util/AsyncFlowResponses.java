@@ -0,0 +1,151 @@
+package com.xyz.webserver.util;
+
+import com.xyz.webserver.data.LoanApplicationException;
+import net.corda.core.concurrent.CordaFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Completes flow-starting requests off the servlet threads. Responses are returned as {@link DeferredResult}s that
+ * time out with 504 after {@code config.flow.deadline-ms}; a timed out flow is not killed and may still complete on
+ * the node.
+ *
+ * Flows started directly over RPC are completed from their {@link CordaFuture}. Processors, which run several
+ * blocking RPC calls in sequence, run on a bounded pool sized by {@code config.flow.executor-threads} and are
+ * rejected with 503 once {@code config.flow.executor-queue} requests are waiting.
+ */
+@Component
+public class AsyncFlowResponses {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncFlowResponses.class);
+
+    private final long deadlineMillis;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncFlowResponses(@Value("${config.flow.deadline-ms:60000}") long deadlineMillis,
+                              @Value("${config.flow.executor-threads:16}") int executorThreads,
+                              @Value("${config.flow.executor-queue:256}") int executorQueue) {
+        this.deadlineMillis = deadlineMillis;
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "flow-request-" + ++count);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.executor = new ThreadPoolExecutor(executorThreads, executorThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(executorQueue), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Adapts the future of a flow started over RPC. The future completes on the RPC client thread, so callbacks
+     * registered on it shall not block.
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(CordaFuture<T> cordaFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        cordaFuture.then(done -> {
+            try {
+                future.complete(done.get());
+            } catch (ExecutionException e) {
+                future.completeExceptionally(e.getCause());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Starts a flow over RPC and adapts its result future, a failure to start the flow fails the returned future.
+     */
+    public static <T> CompletableFuture<T> startFlow(Supplier<CordaFuture<T>> flowStarter) {
+        try {
+            return toCompletableFuture(flowStarter.get());
+        } catch (Exception e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    public <T> DeferredResult<ResponseEntity<Object>> fromFuture(CompletableFuture<T> future,
+                                                                 Function<T, ResponseEntity<Object>> onSuccess) {
+        return fromFuture(future, deadlineMillis, onSuccess);
+    }
+
+    public <T> DeferredResult<ResponseEntity<Object>> fromFuture(CompletableFuture<T> future, long deadline,
+                                                                 Function<T, ResponseEntity<Object>> onSuccess) {
+        DeferredResult<ResponseEntity<Object>> result = newResult(deadline);
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                logger.error("Flow request failed", cause);
+                result.setResult(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new LoanApplicationException(cause.getMessage())));
+            } else {
+                try {
+                    result.setResult(onSuccess.apply(value));
+                } catch (Exception e) {
+                    logger.error("Flow response could not be built", e);
+                    result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(new LoanApplicationException(e.getMessage())));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a blocking request on the flow request pool.
+     */
+    public DeferredResult<ResponseEntity<Object>> supply(Supplier<ResponseEntity<Object>> blockingRequest) {
+        DeferredResult<ResponseEntity<Object>> result = newResult(deadlineMillis);
+        try {
+            executor.execute(() -> {
+                if (result.isSetOrExpired())
+                    return;
+                try {
+                    result.setResult(blockingRequest.get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    result.setResult(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                            .body(new LoanApplicationException(e.getMessage())));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new LoanApplicationException("Too many flow requests in progress, retry later")));
+        }
+        return result;
+    }
+
+    public static DeferredResult<ResponseEntity<Object>> completed(ResponseEntity<Object> response) {
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+
+    private DeferredResult<ResponseEntity<Object>> newResult(long deadline) {
+        return new DeferredResult<>(deadline, ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(new LoanApplicationException("Flow did not complete within " + deadline
+                        + " ms, it may still complete on the node")));
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+}
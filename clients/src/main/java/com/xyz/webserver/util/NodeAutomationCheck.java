@@ -0,0 +1,45 @@
+package com.xyz.webserver.util;
+
+import com.xyz.automation.LoanAutomationStatusFlow;
+import com.xyz.processor.FlowInvoker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the observers of the webserver and the loan automation of the node from acting on the same states: the
+ * controllers only register their observers when the node reports its automation as disabled.
+ */
+@Component
+public class NodeAutomationCheck {
+    private static final Logger logger = LoggerFactory.getLogger(NodeAutomationCheck.class);
+
+    private final NodeRPCConnection rpc;
+    private Boolean automationEnabled;
+
+    public NodeAutomationCheck(NodeRPCConnection rpc) {
+        this.rpc = rpc;
+    }
+
+    /**
+     * Whether the observers may run, asked once of the node. A node whose CorDapp does not know the status flow has
+     * no automation either.
+     */
+    public synchronized boolean observersAllowed() {
+        if (automationEnabled == null) {
+            try {
+                automationEnabled = new FlowInvoker(rpc.getFlowProxy()).run(LoanAutomationStatusFlow.class);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while asking the node for its loan automation", e);
+            } catch (Exception e) {
+                logger.warn("Could not ask the node for its loan automation, assuming it is disabled : "
+                        + e.getMessage());
+                automationEnabled = false;
+            }
+        }
+        if (automationEnabled)
+            logger.warn("Loan automation is enabled on the node, the observers of this webserver are not started");
+        return !automationEnabled;
+    }
+}
@@ -2,21 +2,46 @@ package com.xyz.webserver.util;
 
 import net.corda.client.rpc.CordaRPCClient;
 import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.client.rpc.RPCException;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.utilities.NetworkHostAndPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Wraps an RPC connection to a Corda node.
+ * Wraps a pool of RPC connections to a Corda node.
  *
- * The RPC connection is configured using command line arguments.
+ * The RPC connection is configured using command line arguments. The connections are split in lanes so that flow
+ * starts, vault queries and long-lived vault feeds do not queue behind each other on one Artemis session. Each lane
+ * is exposed as a single {@link CordaRPCOps} that hands each call to the next connection of the lane in turn.
+ *
+ * A connection whose call fails with an {@link RPCException}, as all calls do once the node restarted, is reopened in
+ * the background with a growing delay. Calls are not retried, and skip the connections being reopened while another
+ * connection of the lane is up. Vault feeds opened on a lost connection end with an error; see
+ * {@code VaultStateFeed} for a feed that resubscribes.
+ *
+ * Every call made through the lanes is recorded by {@link RpcMetrics}.
  */
 @Component
 public class NodeRPCConnection implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NodeRPCConnection.class);
+
+    public enum Lane {FLOW, QUERY, FEED}
+
     // The host of the node we are connecting to.
     @Value("${config.rpc.host}")
     private String host;
@@ -29,24 +54,193 @@ public class NodeRPCConnection implements AutoCloseable {
     // The password for logging into the RPC client.
     @Value("${config.rpc.port}")
     private int rpcPort;
+    // The number of connections of each lane.
+    @Value("${config.rpc.pool.flow-connections:2}")
+    private int flowConnections;
+    @Value("${config.rpc.pool.query-connections:2}")
+    private int queryConnections;
+    @Value("${config.rpc.pool.feed-connections:1}")
+    private int feedConnections;
+    // The delay before reopening a lost connection, doubled after each failed attempt up to the maximum.
+    @Value("${config.rpc.reconnect.initial-delay-ms:1000}")
+    private long reconnectInitialDelayMillis;
+    @Value("${config.rpc.reconnect.max-delay-ms:30000}")
+    private long reconnectMaxDelayMillis;
 
-    private CordaRPCConnection rpcConnection;
-    private CordaRPCOps proxy;
+    private final Map<Lane, List<PooledConnection>> connections = new EnumMap<>(Lane.class);
+    private final Map<Lane, CordaRPCOps> laneProxies = new EnumMap<>(Lane.class);
+    private final RpcMetrics metrics = new RpcMetrics();
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rpc-reconnector");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CordaRPCClient rpcClient;
 
     @PostConstruct
     public void initialiseNodeRPCConnection() {
         NetworkHostAndPort rpcAddress = new NetworkHostAndPort(host, rpcPort);
-        CordaRPCClient rpcClient = new CordaRPCClient(rpcAddress);
-        rpcConnection = rpcClient.start(username, password);
-        proxy = rpcConnection.getProxy();
+        rpcClient = new CordaRPCClient(rpcAddress);
+        openLane(rpcClient, Lane.FLOW, flowConnections);
+        openLane(rpcClient, Lane.QUERY, queryConnections);
+        openLane(rpcClient, Lane.FEED, feedConnections);
+    }
+
+    private void openLane(CordaRPCClient rpcClient, Lane lane, int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("The " + lane + " lane needs at least one RPC connection");
+        List<PooledConnection> laneConnections = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            laneConnections.add(new PooledConnection(lane, i, rpcClient.start(username, password)));
+        connections.put(lane, Collections.unmodifiableList(laneConnections));
+        laneProxies.put(lane, metrics.meter(roundRobinProxy(lane, laneConnections)));
+        logger.info("Opened " + size + " RPC connections for the " + lane + " lane to " + host + ":" + rpcPort);
+    }
+
+    private CordaRPCOps roundRobinProxy(Lane lane, List<PooledConnection> laneConnections) {
+        AtomicInteger next = new AtomicInteger();
+        return (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(),
+                new Class<?>[]{CordaRPCOps.class}, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return "CordaRPCOps of the " + lane + " lane";
+                        }
+                    }
+                    int start = next.getAndIncrement();
+                    PooledConnection connection = null;
+                    for (int i = 0; i < laneConnections.size() && (connection == null || !connection.connected); i++)
+                        connection = laneConnections.get(Math.floorMod(start + i, laneConnections.size()));
+                    return connection.invoke(method, args);
+                });
+    }
+
+    /**
+     * The query lane, used for vault queries and other short reads.
+     */
+    public CordaRPCOps getproxy() {
+        return laneProxies.get(Lane.QUERY);
+    }
+
+    public CordaRPCOps getFlowProxy() {
+        return laneProxies.get(Lane.FLOW);
     }
 
-    public CordaRPCOps getproxy(){
-        return proxy;
+    /**
+     * The feed lane, used for long-lived vault and state machine feeds.
+     */
+    public CordaRPCOps getFeedProxy() {
+        return laneProxies.get(Lane.FEED);
+    }
+
+    public List<Map<String, Object>> getConnectionStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<>();
+        connections.values().forEach(laneConnections -> laneConnections.forEach(
+                connection -> statistics.add(connection.getStatistics())));
+        return statistics;
+    }
+
+    public RpcMetrics getMetrics() {
+        return metrics;
     }
 
     @PreDestroy
     public void close() {
-        rpcConnection.notifyServerAndClose();
+        reconnector.shutdownNow();
+        connections.values().forEach(laneConnections -> laneConnections.forEach(PooledConnection::close));
+    }
+
+    private class PooledConnection {
+        private final Lane lane;
+        private final int index;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong reconnects = new AtomicLong();
+        private volatile CordaRPCConnection rpcConnection;
+        private volatile CordaRPCOps proxy;
+        private volatile boolean connected = true;
+
+        private PooledConnection(Lane lane, int index, CordaRPCConnection rpcConnection) {
+            this.lane = lane;
+            this.index = index;
+            this.rpcConnection = rpcConnection;
+            this.proxy = rpcConnection.getProxy();
+        }
+
+        private Object invoke(Method method, Object[] args) throws Throwable {
+            inFlight.incrementAndGet();
+            try {
+                Object result = method.invoke(proxy, args);
+                completed.incrementAndGet();
+                return result;
+            } catch (InvocationTargetException e) {
+                failed.incrementAndGet();
+                if (e.getCause() instanceof RPCException)
+                    disconnected();
+                throw e.getCause();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private synchronized void disconnected() {
+            if (!connected)
+                return;
+            connected = false;
+            logger.warn("RPC connection " + index + " of the " + lane + " lane lost, reconnecting");
+            try {
+                rpcConnection.forceClose();
+            } catch (Exception e) {
+                logger.debug("Failed to close lost RPC connection " + index + " of the " + lane + " lane", e);
+            }
+            scheduleReconnect(reconnectInitialDelayMillis);
+        }
+
+        private void scheduleReconnect(long delay) {
+            if (reconnector.isShutdown())
+                return;
+            reconnector.schedule(() -> {
+                try {
+                    CordaRPCConnection reopened = rpcClient.start(username, password);
+                    synchronized (this) {
+                        rpcConnection = reopened;
+                        proxy = reopened.getProxy();
+                        connected = true;
+                    }
+                    reconnects.incrementAndGet();
+                    logger.info("RPC connection " + index + " of the " + lane + " lane reconnected");
+                } catch (Exception e) {
+                    long nextDelay = Math.min(delay * 2, reconnectMaxDelayMillis);
+                    logger.warn("RPC connection " + index + " of the " + lane + " lane could not reconnect, retrying in "
+                            + nextDelay + " ms : " + e.getMessage());
+                    scheduleReconnect(nextDelay);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private Map<String, Object> getStatistics() {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("lane", lane);
+            statistics.put("connection", index);
+            statistics.put("connected", connected);
+            statistics.put("reconnects", reconnects.get());
+            statistics.put("inFlight", inFlight.get());
+            statistics.put("completed", completed.get());
+            statistics.put("failed", failed.get());
+            return statistics;
+        }
+
+        private void close() {
+            try {
+                rpcConnection.notifyServerAndClose();
+            } catch (Exception e) {
+                logger.warn("Failed to close RPC connection " + index + " of the " + lane + " lane", e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
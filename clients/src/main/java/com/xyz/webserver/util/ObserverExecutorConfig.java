@@ -0,0 +1,49 @@
+package com.xyz.webserver.util;
+
+import com.xyz.observer.KeyedObserverExecutor;
+import com.xyz.observer.ObserverBacklog;
+import com.xyz.observer.ObserverRuntime;
+import com.xyz.observer.ProcessedStateLog;
+import com.xyz.observer.VaultStateFeed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class ObserverExecutorConfig {
+
+    @Bean(destroyMethod = "close")
+    public KeyedObserverExecutor keyedObserverExecutor(@Value("${config.observer.threads:8}") int threads,
+                                                       @Value("${config.observer.queue-capacity:1000}") int queueCapacity) {
+        return new KeyedObserverExecutor("observer", threads, queueCapacity);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ObserverBacklog observerBacklog(
+            @Value("${config.observer.backlog-capacity:10000}") int capacity,
+            @Value("${config.observer.overflow-policy:BLOCK}") ObserverBacklog.OverflowPolicy overflowPolicy,
+            @Value("${config.observer.spill-dir:${java.io.tmpdir}}") String spillDirectory) throws IOException {
+        return new ObserverBacklog(capacity, overflowPolicy, Paths.get(spillDirectory));
+    }
+
+    @Bean(destroyMethod = "close")
+    public ProcessedStateLog processedStateLog(
+            @Value("${config.observer.processed-log:observer-processed-${server.port}.log}") String file,
+            @Value("${config.observer.processed-log-sync-batch:100}") int syncBatchSize,
+            @Value("${config.observer.processed-log-sync-interval-ms:200}") long syncIntervalMillis) throws IOException {
+        return new ProcessedStateLog(Paths.get(file), syncBatchSize, syncIntervalMillis);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ObserverRuntime observerRuntime(VaultStateFeed vaultStateFeed, KeyedObserverExecutor keyedObserverExecutor,
+                                           NodeRPCConnection rpc, ObserverBacklog observerBacklog,
+                                           ProcessedStateLog processedStateLog,
+                                           @Value("${config.observer.handler-attempts:5}") int handlerAttempts,
+                                           @Value("${config.observer.handler-retry-delay-ms:1000}") long handlerRetryDelayMillis) {
+        return new ObserverRuntime(vaultStateFeed, keyedObserverExecutor, rpc.getproxy(), observerBacklog,
+                processedStateLog, handlerAttempts, handlerRetryDelayMillis);
+    }
+}
@@ -0,0 +1,26 @@
+package com.xyz.webserver.util;
+
+import com.xyz.processor.PartyDirectory;
+import net.corda.core.identity.CordaX500Name;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+public class PartyDirectoryConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public PartyDirectory partyDirectory(NodeRPCConnection rpc,
+                                         @Value("${config.party.finance-agency:O=XYZLoaning,L=London,C=GB}") String financeAgency,
+                                         @Value("${config.party.credit-agency:O=NewShireCreditRatingAgency,L=New York,C=US}") String creditAgency,
+                                         @Value("${config.party.bank:O=MTCBank,L=New York,C=US}") String bank) {
+        Map<PartyDirectory.Role, CordaX500Name> names = new EnumMap<>(PartyDirectory.Role.class);
+        names.put(PartyDirectory.Role.FINANCE_AGENCY, CordaX500Name.parse(financeAgency));
+        names.put(PartyDirectory.Role.CREDIT_AGENCY, CordaX500Name.parse(creditAgency));
+        names.put(PartyDirectory.Role.BANK, CordaX500Name.parse(bank));
+        return new PartyDirectory(rpc.getFeedProxy(), names);
+    }
+}
@@ -0,0 +1,47 @@
+package com.xyz.webserver.util;
+
+import com.xyz.observer.ObserverRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Reports the RPC connections of the pool, with the calls in flight, completed and failed on each, and the latencies
+ * of the RPC calls and flows made through them, and the backlog, handler latencies and lag
+ * of the observers.
+ */
+@RestController
+@RequestMapping("/")
+public class RpcConnectionsController {
+    private static final Logger logger = LoggerFactory.getLogger(RpcConnectionsController.class);
+    private final NodeRPCConnection rpc;
+    private final ObserverRuntime observerRuntime;
+
+    public RpcConnectionsController(NodeRPCConnection rpc, ObserverRuntime observerRuntime) {
+        this.rpc = rpc;
+        this.observerRuntime = observerRuntime;
+    }
+
+    @GetMapping(value = "rpcConnections", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> rpcConnections() {
+        logger.info("HTTP REQUEST : rpcConnections");
+        return ResponseEntity.status(HttpStatus.OK).body(rpc.getConnectionStatistics());
+    }
+
+    @GetMapping(value = "metrics", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> metrics() {
+        logger.info("HTTP REQUEST : metrics");
+        Map<String, Object> metrics = new LinkedHashMap<>(rpc.getMetrics().getStatistics());
+        metrics.put("observers", observerRuntime.getStatistics());
+        return ResponseEntity.status(HttpStatus.OK).body(metrics);
+    }
+}
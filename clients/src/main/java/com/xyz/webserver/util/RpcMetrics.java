@@ -0,0 +1,155 @@
+package com.xyz.webserver.util;
+
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowHandle;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call counts, error counts and latency histograms of the RPC calls made to the node, per RPC method and, for the
+ * flows started over RPC, per flow class.
+ *
+ * The time to start of a flow is the duration of the {@code startFlowDynamic} or {@code startTrackedFlowDynamic} call,
+ * which returns once the node accepted the flow; the time to complete runs from the same call until the result
+ * future of the flow is done. Latencies are recorded in microseconds since the webserver started.
+ */
+public class RpcMetrics {
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, CallMetrics> methods = new ConcurrentHashMap<>();
+    private final Map<String, FlowMetrics> flows = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps the proxy so that every call made through it is recorded.
+     */
+    public CordaRPCOps meter(CordaRPCOps delegate) {
+        return (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(),
+                new Class<?>[]{CordaRPCOps.class}, (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class)
+                        return method.invoke(delegate, args);
+                    CallMetrics callMetrics = methods.computeIfAbsent(method.getName(), name -> new CallMetrics());
+                    FlowMetrics flowMetrics = isFlowStart(method.getName(), args)
+                            ? flows.computeIfAbsent(((Class<?>) args[0]).getName(), name -> new FlowMetrics())
+                            : null;
+                    long startedAt = System.nanoTime();
+                    Object result;
+                    try {
+                        result = method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        callMetrics.record(startedAt, false);
+                        if (flowMetrics != null)
+                            flowMetrics.startErrors.incrementAndGet();
+                        throw e.getCause();
+                    }
+                    callMetrics.record(startedAt, true);
+                    if (flowMetrics != null)
+                        flowMetrics.started(startedAt, ((FlowHandle<?>) result).getReturnValue());
+                    return result;
+                });
+    }
+
+    private static boolean isFlowStart(String methodName, Object[] args) {
+        return (methodName.equals("startFlowDynamic") || methodName.equals("startTrackedFlowDynamic"))
+                && args != null && args.length > 0 && args[0] instanceof Class;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> rpcStatistics = new TreeMap<>();
+        methods.forEach((name, callMetrics) -> rpcStatistics.put(name, callMetrics.getStatistics()));
+        Map<String, Object> flowStatistics = new TreeMap<>();
+        flows.forEach((name, flowMetrics) -> flowStatistics.put(name, flowMetrics.getStatistics()));
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("rpc", rpcStatistics);
+        statistics.put("flows", flowStatistics);
+        return statistics;
+    }
+
+    private static Histogram newHistogram() {
+        return new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    }
+
+    private static long elapsedMicros(long startedAt) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+    }
+
+    private static Map<String, Object> latencies(Histogram histogram) {
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        latencies.put("count", histogram.getTotalCount());
+        latencies.put("meanMicros", Math.round(histogram.getMean()));
+        latencies.put("p50Micros", histogram.getValueAtPercentile(50));
+        latencies.put("p90Micros", histogram.getValueAtPercentile(90));
+        latencies.put("p99Micros", histogram.getValueAtPercentile(99));
+        latencies.put("p999Micros", histogram.getValueAtPercentile(99.9));
+        latencies.put("maxMicros", histogram.getMaxValue());
+        return latencies;
+    }
+
+    private static class CallMetrics {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final Histogram latency = newHistogram();
+
+        private void record(long startedAt, boolean succeeded) {
+            latency.recordValue(elapsedMicros(startedAt));
+            calls.incrementAndGet();
+            if (!succeeded)
+                errors.incrementAndGet();
+        }
+
+        private Map<String, Object> getStatistics() {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("calls", calls.get());
+            statistics.put("errors", errors.get());
+            statistics.put("latency", latencies(latency));
+            return statistics;
+        }
+    }
+
+    private static class FlowMetrics {
+        private final AtomicLong startErrors = new AtomicLong();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Histogram timeToStart = newHistogram();
+        private final Histogram timeToComplete = newHistogram();
+
+        private void started(long startedAt, CordaFuture<?> returnValue) {
+            timeToStart.recordValue(elapsedMicros(startedAt));
+            started.incrementAndGet();
+            returnValue.then(done -> {
+                timeToComplete.recordValue(elapsedMicros(startedAt));
+                try {
+                    done.get();
+                    completed.incrementAndGet();
+                } catch (InterruptedException | ExecutionException e) {
+                    failed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        private Map<String, Object> getStatistics() {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("started", started.get());
+            statistics.put("startErrors", startErrors.get());
+            statistics.put("completed", completed.get());
+            statistics.put("failed", failed.get());
+            statistics.put("inFlight", started.get() - completed.get() - failed.get());
+            statistics.put("timeToStart", latencies(timeToStart));
+            statistics.put("timeToComplete", latencies(timeToComplete));
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.xyz.webserver.util;
+
+import com.xyz.observer.VaultStateFeed;
+import com.xyz.states.BankFinanceState;
+import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
+import com.xyz.webserver.data.ControllerStatusResponse;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Publishes each produced LoanApplicationState, CreditRatingState and BankFinanceState of the shared vault feed to
+ * the STOMP topics
+ * <ul>
+ * <li>{@code /topic/states} every state,</li>
+ * <li>{@code /topic/states/id/{id}} the states of one loanApplicationId, loanVerificationId or bankProcessingId,</li>
+ * <li>{@code /topic/states/status/{status}} the states entering one status.</li>
+ * </ul>
+ */
+@Component
+public class StateFeedPublisher {
+    private static final String TOPIC = "/topic/states";
+
+    private final VaultStateFeed vaultStateFeed;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Consumer<StateAndRef<ContractState>> listener = this::publish;
+
+    public StateFeedPublisher(VaultStateFeed vaultStateFeed, SimpMessagingTemplate messagingTemplate) {
+        this.vaultStateFeed = vaultStateFeed;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        vaultStateFeed.addListener(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        vaultStateFeed.removeListener(listener);
+    }
+
+    private void publish(StateAndRef<ContractState> stateAndRef) {
+        Map<String, String> message = toMessage(stateAndRef);
+        if (message == null)
+            return;
+        messagingTemplate.convertAndSend(TOPIC, message);
+        messagingTemplate.convertAndSend(TOPIC + "/id/" + message.get("id"), message);
+        messagingTemplate.convertAndSend(TOPIC + "/status/" + message.get("status"), message);
+    }
+
+    private static Map<String, String> toMessage(StateAndRef<ContractState> stateAndRef) {
+        ContractState state = stateAndRef.getState().getData();
+        Map<String, String> message = new LinkedHashMap<>();
+        message.put("stateRef", stateAndRef.getRef().toString());
+        if (state instanceof LoanApplicationState) {
+            LoanApplicationState applicationState = (LoanApplicationState) state;
+            message.put("stateType", "LoanApplicationState");
+            message.put("id", applicationState.getLoanApplicationId().getId().toString());
+            message.put("status", applicationState.getApplicationStatus().toString());
+            message.put(ControllerStatusResponse.COMPANY_NAME, applicationState.getCompanyName());
+            message.put(ControllerStatusResponse.LOAN_AMOUNT, String.valueOf(applicationState.getLoanAmount()));
+        } else if (state instanceof CreditRatingState) {
+            CreditRatingState creditState = (CreditRatingState) state;
+            message.put("stateType", "CreditRatingState");
+            message.put("id", creditState.getLoanVerificationId().getId().toString());
+            message.put("status", creditState.getCreditScoreDesc().toString());
+            message.put(ControllerStatusResponse.COMPANY_NAME, creditState.getCompanyName());
+            message.put(ControllerStatusResponse.LOAN_AMOUNT, String.valueOf(creditState.getLoanAmount()));
+        } else if (state instanceof BankFinanceState) {
+            BankFinanceState financeState = (BankFinanceState) state;
+            message.put("stateType", "BankFinanceState");
+            message.put("id", financeState.getBankLoanProcessingId().getId().toString());
+            message.put("status", financeState.getBankProcessingStatus().toString());
+            message.put(ControllerStatusResponse.COMPANY_NAME, financeState.getCompanyName());
+            message.put(ControllerStatusResponse.LOAN_AMOUNT, String.valueOf(financeState.getLoanAmount()));
+        } else {
+            return null;
+        }
+        return message;
+    }
+}
@@ -0,0 +1,67 @@
+package com.xyz.webserver.util;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.FieldInfo;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.schemas.StatePersistable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregate vault queries over the unconsumed states of the {@code LoaningProcessSchemas} tables. Only the aggregated
+ * values are returned over RPC, never the states.
+ */
+public final class VaultAggregates {
+
+    private VaultAggregates() {
+    }
+
+    /**
+     * Counts the states in each value of a status column. The vault cannot group a count, so this runs one count
+     * query per status value.
+     */
+    public static <E extends Enum<E>> Map<String, Long> countByStatus(CordaRPCOps proxy,
+                                                                     Class<? extends ContractState> stateType,
+                                                                     String statusColumn,
+                                                                     Class<? extends StatePersistable> entityClass,
+                                                                     Class<E> statusType) throws NoSuchFieldException {
+        FieldInfo statusField = QueryCriteriaUtils.getField(statusColumn, entityClass);
+        QueryCriteria countCriteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.count(statusField));
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (E status : statusType.getEnumConstants()) {
+            QueryCriteria statusCriteria = new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.equal(statusField, status.name()));
+            List<Object> results = proxy.vaultQueryByCriteria(countCriteria.and(statusCriteria), stateType)
+                    .getOtherResults();
+            counts.put(status.name(), results.isEmpty() || results.get(0) == null ? 0L : ((Number) results.get(0)).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Sums a numeric column grouped by another column, largest sum first.
+     */
+    public static Map<String, Long> sumGroupedBy(CordaRPCOps proxy, Class<? extends ContractState> stateType,
+                                                 String sumColumn, String groupColumn,
+                                                 Class<? extends StatePersistable> entityClass) throws NoSuchFieldException {
+        QueryCriteria sumCriteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.sum(
+                QueryCriteriaUtils.getField(sumColumn, entityClass),
+                Collections.singletonList(QueryCriteriaUtils.getField(groupColumn, entityClass)),
+                Sort.Direction.DESC));
+        // Each group contributes its sum followed by its group value.
+        List<Object> results = proxy.vaultQueryByCriteria(sumCriteria, stateType).getOtherResults();
+        Map<String, Long> sums = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < results.size(); i += 2) {
+            Number sum = (Number) results.get(i);
+            sums.put(String.valueOf(results.get(i + 1)), sum == null ? 0L : sum.longValue());
+        }
+        return sums;
+    }
+}
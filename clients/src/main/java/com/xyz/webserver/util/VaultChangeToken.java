@@ -0,0 +1,103 @@
+package com.xyz.webserver.util;
+
+import com.xyz.observer.VaultStateFeed;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Per state type change counter kept current from the shared vault feed, used to answer conditional requests
+ * without querying the vault.
+ *
+ * The ETag of a response is derived from the change counter of the state type it reads, read before the vault is
+ * queried, and from the request parameters. A response is therefore never tagged as more recent than the data it
+ * carries. No ETag is issued while the vault feed is not live, as changes could then go unseen, and the tags issued
+ * before the feed resubscribed are not matched after it.
+ */
+@Component
+public class VaultChangeToken {
+    private final VaultStateFeed vaultStateFeed;
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private final Map<Class<?>, AtomicLong> changeCounters = new ConcurrentHashMap<>();
+    private final Consumer<StateAndRef<ContractState>> listener = this::onProduced;
+
+    public VaultChangeToken(VaultStateFeed vaultStateFeed) {
+        this.vaultStateFeed = vaultStateFeed;
+    }
+
+    @PostConstruct
+    public void init() {
+        vaultStateFeed.addListener(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        vaultStateFeed.removeListener(listener);
+    }
+
+    private void onProduced(StateAndRef<ContractState> stateAndRef) {
+        changeCounters.computeIfAbsent(stateAndRef.getState().getData().getClass(), type -> new AtomicLong())
+                .incrementAndGet();
+    }
+
+    /**
+     * Returns the ETag of a response reading the given state type for the given request parameters, or null when
+     * the response shall not be tagged.
+     */
+    public String etag(Class<? extends ContractState> stateType, Object... requestParameters) {
+        if (!vaultStateFeed.isLive())
+            return null;
+        long changes = changeCounters.computeIfAbsent(stateType, type -> new AtomicLong()).get();
+        return "\"" + epoch + "." + Long.toHexString(vaultStateFeed.getGeneration()) + "-" + Long.toHexString(changes)
+                + "-" + digest(Arrays.deepToString(requestParameters)) + "\"";
+    }
+
+    private static String digest(String requestParameters) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(requestParameters.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 12; i++)
+                hex.append(String.format("%02x", hash[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null)
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
+    public static ResponseEntity<Object> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    public static ResponseEntity<Object> ok(Object body, String etag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        if (etag != null)
+            response.eTag(etag);
+        return response.body(body);
+    }
+}
@@ -0,0 +1,160 @@
+package com.xyz.webserver.util;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.FieldInfo;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.schemas.StatePersistable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers to push paging, sorting and status filtering of the listing endpoints down into the vault query,
+ * instead of fetching every state over RPC and filtering it in the webserver.
+ */
+public final class VaultPaging {
+    public static final String DEFAULT_PAGE = "1";
+    public static final String DEFAULT_PAGE_SIZE = "50";
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_IDS = 10000;
+    private static final int ID_CHUNK_SIZE = 500;
+
+    private VaultPaging() {
+    }
+
+    public static PageSpecification pageSpecification(int page, int pageSize) {
+        if (page < QueryCriteriaUtils.DEFAULT_PAGE_NUM)
+            throw new IllegalArgumentException("page shall be " + QueryCriteriaUtils.DEFAULT_PAGE_NUM + " or greater");
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("pageSize shall be between 1 and " + MAX_PAGE_SIZE);
+        return new PageSpecification(page, pageSize);
+    }
+
+    /**
+     * Parses a {@code column[,asc|desc]} sort parameter against the columns of the given schema entity. Without a
+     * sort parameter the states are returned in the order they were recorded. The state reference is always
+     * appended as a tie breaker so that consecutive pages never overlap.
+     */
+    public static Sort sort(String sort, Class<? extends StatePersistable> entityClass) {
+        Sort.SortColumn primary;
+        if (sort == null || sort.trim().isEmpty()) {
+            primary = new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME),
+                    Sort.Direction.ASC);
+        } else {
+            String[] sortParts = sort.split(",");
+            String column = sortParts[0].trim();
+            try {
+                QueryCriteriaUtils.getField(column, entityClass);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("Unknown sort column : " + column);
+            }
+            Sort.Direction direction = sortParts.length > 1
+                    ? Sort.Direction.valueOf(sortParts[1].trim().toUpperCase()) : Sort.Direction.ASC;
+            primary = new Sort.SortColumn(new SortAttribute.Custom(entityClass, column), direction);
+        }
+        return new Sort(Arrays.asList(primary,
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+    }
+
+    /**
+     * Restricts the query to the given status values of a status column. Statuses are persisted as their enum
+     * names in the {@code LoaningProcessSchemas} tables.
+     */
+    public static QueryCriteria statusCriteria(String column, Class<? extends StatePersistable> entityClass,
+                                               Collection<? extends Enum<?>> statuses) throws NoSuchFieldException {
+        return statusCriteria(column, entityClass, statuses, Vault.StateStatus.UNCONSUMED);
+    }
+
+    public static QueryCriteria statusCriteria(String column, Class<? extends StatePersistable> entityClass,
+                                               Collection<? extends Enum<?>> statuses,
+                                               Vault.StateStatus stateStatus) throws NoSuchFieldException {
+        List<String> statusNames = statuses.stream().map(Enum::name).collect(Collectors.toList());
+        return new QueryCriteria.VaultCustomQueryCriteria(
+                Builder.in(QueryCriteriaUtils.getField(column, entityClass), statusNames), stateStatus);
+    }
+
+    /**
+     * Restricts the query to the states recorded at or before the given instant, consumed or not. The matching set
+     * never changes afterwards, so paging over it neither skips nor repeats a state while new transactions keep
+     * consuming and producing states. The vault applies a single state status to the whole query, so this is one
+     * {@link Vault.StateStatus#ALL} criteria: combine it only with criteria that query the same status, and keep the
+     * states that were live at the instant with {@link #isLiveAt}.
+     */
+    public static QueryCriteria snapshotAt(Instant snapshot) {
+        return new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL)
+                .withTimeCondition(new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.RECORDED,
+                        Builder.lessThanOrEqual(snapshot)));
+    }
+
+    /**
+     * Tells whether a state returned for {@link #snapshotAt} was live at the snapshot: still unconsumed, or consumed
+     * only after it.
+     */
+    public static boolean isLiveAt(Vault.StateMetadata metadata, Instant snapshot) {
+        return metadata.getConsumedTime() == null || metadata.getConsumedTime().isAfter(snapshot);
+    }
+
+    /**
+     * Parses the IDs of a batch lookup, dropping duplicates while keeping the order of the request.
+     */
+    public static Set<UUID> parseIds(Collection<String> ids) {
+        if (ids == null || ids.isEmpty())
+            throw new IllegalArgumentException("applicationIDs shall not be empty");
+        if (ids.size() > MAX_BATCH_IDS)
+            throw new IllegalArgumentException("At most " + MAX_BATCH_IDS + " applicationIDs can be looked up at once");
+        Set<UUID> uuids = new LinkedHashSet<>();
+        for (String id : ids) {
+            try {
+                uuids.add(UUID.fromString(id));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Invalid application ID : " + id);
+            }
+        }
+        return uuids;
+    }
+
+    /**
+     * Fetches the unconsumed states whose ID column matches any of the given IDs, with one {@code IN} query per
+     * chunk of IDs rather than one query per ID.
+     */
+    public static <T extends ContractState> List<StateAndRef<T>> queryByIds(CordaRPCOps proxy, Class<T> stateType,
+                                                                           String idColumn,
+                                                                           Class<? extends StatePersistable> entityClass,
+                                                                           Collection<UUID> ids) throws NoSuchFieldException {
+        FieldInfo idField = QueryCriteriaUtils.getField(idColumn, entityClass);
+        List<UUID> idList = new ArrayList<>(ids);
+        List<StateAndRef<T>> states = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += ID_CHUNK_SIZE) {
+            List<UUID> chunk = new ArrayList<>(idList.subList(from, Math.min(from + ID_CHUNK_SIZE, idList.size())));
+            QueryCriteria criteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.in(idField, chunk));
+            states.addAll(proxy.vaultQueryByWithPagingSpec(stateType, criteria,
+                    new PageSpecification(QueryCriteriaUtils.DEFAULT_PAGE_NUM, chunk.size())).getStates());
+        }
+        return states;
+    }
+
+    public static <E extends Enum<E>> E parseStatus(Class<E> statusType, String status) {
+        try {
+            return Enum.valueOf(statusType, status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown status : " + status + ", expected one of "
+                    + Arrays.toString(statusType.getEnumConstants()));
+        }
+    }
+}
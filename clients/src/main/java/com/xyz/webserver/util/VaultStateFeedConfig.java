@@ -0,0 +1,14 @@
+package com.xyz.webserver.util;
+
+import com.xyz.observer.VaultStateFeed;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class VaultStateFeedConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public VaultStateFeed vaultStateFeed(NodeRPCConnection rpc) {
+        return new VaultStateFeed(rpc.getFeedProxy());
+    }
+}
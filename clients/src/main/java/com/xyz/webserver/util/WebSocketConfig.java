@@ -0,0 +1,43 @@
+package com.xyz.webserver.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+/**
+ * STOMP over WebSocket endpoint of the webserver, see {@link StateFeedPublisher} for the topics.
+ *
+ * Each session buffers at most {@code config.websocket.send-buffer-bytes} of outgoing messages; a subscriber that
+ * falls further behind, or blocks a send longer than {@code config.websocket.send-time-ms}, is disconnected instead of
+ * buffering without bound.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Value("${config.websocket.send-buffer-bytes:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${config.websocket.send-time-ms:10000}")
+    private int sendTimeLimit;
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws");
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic");
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit);
+        registration.setSendTimeLimit(sendTimeLimit);
+    }
+}
@@ -1,3 +1,54 @@
 "use strict";
 
-// Define your client-side logic here.
\ No newline at end of file
+// Live feed of the states produced on this node, over STOMP on the /ws WebSocket endpoint.
+// Open index.html?id={application id} or index.html?status={status} to follow a single application or status.
+(function () {
+    var params = new URLSearchParams(window.location.search);
+    var destination = params.get("id") ? "/topic/states/id/" + params.get("id")
+        : params.get("status") ? "/topic/states/status/" + params.get("status")
+        : "/topic/states";
+    var protocol = window.location.protocol === "https:" ? "wss://" : "ws://";
+
+    function frame(command, headers) {
+        var lines = [command];
+        Object.keys(headers).forEach(function (name) {
+            lines.push(name + ":" + headers[name]);
+        });
+        return lines.join("\n") + "\n\n\0";
+    }
+
+    function show(state) {
+        var item = document.createElement("li");
+        item.textContent = new Date().toLocaleTimeString() + " " + state.stateType + " " + state.id + " " + state.status;
+        var list = document.getElementById("states");
+        list.insertBefore(item, list.firstChild);
+        while (list.children.length > 200) {
+            list.removeChild(list.lastChild);
+        }
+    }
+
+    function connect() {
+        var socket = new WebSocket(protocol + window.location.host + "/ws");
+        socket.onopen = function () {
+            socket.send(frame("CONNECT", {"accept-version": "1.2", "host": window.location.hostname}));
+        };
+        socket.onmessage = function (event) {
+            event.data.split("\0").forEach(function (data) {
+                var separator = data.indexOf("\n\n");
+                var command = data.substring(0, data.indexOf("\n")).trim();
+                if (command === "CONNECTED") {
+                    document.getElementById("feed").textContent = destination;
+                    socket.send(frame("SUBSCRIBE", {"id": "states", "destination": destination}));
+                } else if (command === "MESSAGE" && separator > 0) {
+                    show(JSON.parse(data.substring(separator + 2)));
+                }
+            });
+        };
+        socket.onclose = function () {
+            document.getElementById("feed").textContent = "disconnected, reconnecting...";
+            setTimeout(connect, 5000);
+        };
+    }
+
+    window.addEventListener("load", connect);
+})();
@@ -0,0 +1,127 @@
+package com.xyz.webserver.util;
+
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.flows.fa.CreditCheckInitiationFlow;
+import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.states.LoanApplicationState;
+import com.xyz.states.schema.LoaningProcessSchemas;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.MockNodeParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the snapshot criteria of the export against the vault of a mock finance agency node.
+ */
+public class VaultPagingTest {
+    private MockNetwork network;
+    private StartedMockNode financeAgency;
+    private Party creditAgencyParty;
+
+    @Before
+    public void setup() {
+        network = new MockNetwork(new MockNetworkParameters().withCordappsForAllNodes(Arrays.asList(
+                TestCordapp.findCordapp("com.xyz.contracts"),
+                TestCordapp.findCordapp("com.xyz.flows"))));
+        financeAgency = network.createNode(new MockNodeParameters()
+                .withLegalName(new CordaX500Name("XYZLoaning", "London", "GB")));
+        StartedMockNode creditAgency = network.createNode(new MockNodeParameters()
+                .withLegalName(new CordaX500Name("NewShireCreditRatingAgency", "New York", "US")));
+        creditAgencyParty = creditAgency.getInfo().getLegalIdentities().get(0);
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void snapshotHoldsTheApplicationsLiveAtTheSnapshot() throws Exception {
+        UniqueIdentifier live = applyForLoan("XYZ Retail");
+        UniqueIdentifier forwardedBefore = applyForLoan("ABC Foods");
+        run(new CreditCheckInitiationFlow(forwardedBefore, creditAgencyParty));
+        UniqueIdentifier forwardedAfter = applyForLoan("DEF Logistics");
+        Instant snapshot = takeSnapshot();
+        run(new CreditCheckInitiationFlow(forwardedAfter, creditAgencyParty));
+        applyForLoan("GHI Textiles");
+
+        List<String> exported = export(VaultPaging.snapshotAt(snapshot), snapshot);
+
+        assertEquals(3, exported.size());
+        assertTrue(exported.contains(live.getId() + " " + LoanApplicationStatus.APPLIED));
+        assertTrue(exported.contains(forwardedBefore.getId() + " "
+                + LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY));
+        assertTrue(exported.contains(forwardedAfter.getId() + " " + LoanApplicationStatus.APPLIED));
+    }
+
+    @Test
+    public void statusFilterKeepsTheLiveApplicationsOfThatStatus() throws Exception {
+        UniqueIdentifier live = applyForLoan("XYZ Retail");
+        UniqueIdentifier forwarded = applyForLoan("ABC Foods");
+        run(new CreditCheckInitiationFlow(forwarded, creditAgencyParty));
+        Instant snapshot = takeSnapshot();
+
+        List<String> exported = export(VaultPaging.snapshotAt(snapshot).and(VaultPaging.statusCriteria(
+                "applicationStatus", LoaningProcessSchemas.PersistentLoanApplicationState.class,
+                Collections.singleton(LoanApplicationStatus.APPLIED), Vault.StateStatus.ALL)), snapshot);
+
+        assertEquals(Collections.singletonList(live.getId() + " " + LoanApplicationStatus.APPLIED), exported);
+    }
+
+    /**
+     * Takes the snapshot strictly between the transactions recorded before and after it.
+     */
+    private Instant takeSnapshot() throws InterruptedException {
+        Thread.sleep(10);
+        Instant snapshot = financeAgency.getServices().getClock().instant();
+        Thread.sleep(10);
+        return snapshot;
+    }
+
+    private List<String> export(QueryCriteria criteria, Instant snapshot) {
+        Vault.Page<LoanApplicationState> page = financeAgency.transaction(() -> financeAgency.getServices()
+                .getVaultService().queryBy(LoanApplicationState.class, criteria,
+                        VaultPaging.sort(null, LoaningProcessSchemas.PersistentLoanApplicationState.class)));
+        List<String> exported = new ArrayList<>();
+        for (int i = 0; i < page.getStates().size(); i++) {
+            if (VaultPaging.isLiveAt(page.getStatesMetadata().get(i), snapshot)) {
+                LoanApplicationState application = page.getStates().get(i).getState().getData();
+                exported.add(application.getLoanApplicationId().getId() + " " + application.getApplicationStatus());
+            }
+        }
+        return exported;
+    }
+
+    private UniqueIdentifier applyForLoan(String companyName) throws Exception {
+        SignedTransaction tx = run(new LoanApplicationCreationFlow(companyName, "Retail", 10000L));
+        return ((LoanApplicationState) tx.getTx().getOutputs().get(0).getData()).getLoanApplicationId();
+    }
+
+    private <T> T run(FlowLogic<T> flow) throws Exception {
+        CordaFuture<T> future = financeAgency.startFlow(flow);
+        network.runNetwork();
+        return future.get();
+    }
+}
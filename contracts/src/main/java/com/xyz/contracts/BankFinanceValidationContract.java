@@ -3,7 +3,8 @@ package com.xyz.contracts;
 import com.xyz.constants.BankProcessingStatus;
 import com.xyz.constants.CreditScoreDesc;
 import com.xyz.states.BankFinanceState;
-import net.corda.core.contracts.Command;
+import com.xyz.states.LoanApplicationState;
+import net.corda.core.contracts.CommandWithParties;
 import net.corda.core.contracts.CommandData;
 import net.corda.core.contracts.Contract;
 import net.corda.core.transactions.LedgerTransaction;
@@ -17,10 +18,13 @@ import static net.corda.core.contracts.ContractsDSL.requireThat;
 public class BankFinanceValidationContract implements Contract {
     @Override
     public void verify(@NotNull LedgerTransaction tx) throws IllegalArgumentException {
-        if (tx != null && tx.getCommands().size() != 1)
-            throw new IllegalArgumentException("More than one command for Single Transaction : INVALID");
+        // Only the bank processing commands are ours, the loan application recorded with the bank processing
+        // initiation or decision carries its own command too.
+        List<CommandWithParties<Commands>> commands = tx.commandsOfType(Commands.class);
+        if (commands.size() != 1)
+            throw new IllegalArgumentException("More than one bank processing command for Single Transaction : INVALID");
 
-        Command command = tx.getCommand(0);
+        CommandWithParties<Commands> command = commands.get(0);
         List<PublicKey> requiredSigners = command.getSigners();
         CommandData commandType = command.getValue();
 
@@ -33,13 +37,18 @@ public class BankFinanceValidationContract implements Contract {
 
     private void verifyBankInitiation(LedgerTransaction tx, List<PublicKey> requiredSigners) {
         requireThat(req -> {
-            req.using("Two transaction signer expected", requiredSigners.size() == 2);
-            req.using("Only one output should be created during the process BankFinanceState", tx.getOutputStates().size() == 1);
+            List<BankFinanceState> outputStates = tx.outputsOfType(BankFinanceState.class);
 
-            req.using("Output state shall be of type BankFinanceState", tx.getOutput(0) instanceof BankFinanceState);
-            req.using("No input should be consumed while initiating Bank processing", tx.getInputStates().isEmpty());
+            req.using("Two transaction signer expected", requiredSigners.size() == 2);
+            req.using("Only one BankFinanceState output should be created during the process BankFinanceState", outputStates.size() == 1);
+            req.using("No BankFinanceState input should be consumed while initiating Bank processing", tx.inputsOfType(BankFinanceState.class).isEmpty());
+            // The loan application forwarded to the bank may be recorded in the same transaction.
+            req.using("Only a LoanApplicationState can be created along the BankFinanceState",
+                    tx.getOutputStates().size() == 1 + tx.outputsOfType(LoanApplicationState.class).size());
+            req.using("Only a LoanApplicationState can be consumed while initiating Bank processing",
+                    tx.getInputStates().size() == tx.inputsOfType(LoanApplicationState.class).size());
 
-            BankFinanceState bankFinanceState = (BankFinanceState) tx.getOutput(0);
+            BankFinanceState bankFinanceState = outputStates.get(0);
 
             req.using("Finance agency signature not present in the transaction", requiredSigners.contains(bankFinanceState.getFinanceAgencyNode().getOwningKey()));
             req.using("Bank signature not present in the transaction", requiredSigners.contains(bankFinanceState.getBankNode().getOwningKey()));
@@ -54,14 +63,20 @@ public class BankFinanceValidationContract implements Contract {
 
     private void verifyBankProcessing(LedgerTransaction tx, List<PublicKey> requiredSigners) {
         requireThat(req -> {
-            req.using("Two transaction signer expected", requiredSigners.size() == 2);
-            req.using("Only one output should be created during the process BankFinanceState", tx.getOutputStates().size() == 1);
+            List<BankFinanceState> inputStates = tx.inputsOfType(BankFinanceState.class);
+            List<BankFinanceState> outputStates = tx.outputsOfType(BankFinanceState.class);
 
-            req.using("Output state shall be of type BankFinanceState", tx.getOutput(0) instanceof BankFinanceState);
-            req.using("Input state shall be of type BankFinanceState", tx.getInput(0) instanceof BankFinanceState);
-
-            BankFinanceState inB = (BankFinanceState) tx.getInput(0);
-            BankFinanceState opB = (BankFinanceState) tx.getOutput(0);
+            req.using("Two transaction signer expected", requiredSigners.size() == 2);
+            req.using("Only one BankFinanceState output should be created during the process BankFinanceState", outputStates.size() == 1);
+            req.using("Only one BankFinanceState input should be consumed during the process BankFinanceState", inputStates.size() == 1);
+            // The loan application updated from the bank decision may be recorded in the same transaction.
+            req.using("Only a LoanApplicationState can be created along the BankFinanceState",
+                    tx.getOutputStates().size() == 1 + tx.outputsOfType(LoanApplicationState.class).size());
+            req.using("Only a LoanApplicationState can be consumed along the BankFinanceState",
+                    tx.getInputStates().size() == 1 + tx.inputsOfType(LoanApplicationState.class).size());
+
+            BankFinanceState inB = inputStates.get(0);
+            BankFinanceState opB = outputStates.get(0);
 
             req.using("Finanace agency signature not present in the transaction", requiredSigners.contains(opB.getFinanceAgencyNode().getOwningKey()));
             req.using("Bank signature not present in the transaction", requiredSigners.contains(opB.getBankNode().getOwningKey()));
@@ -2,7 +2,8 @@ package com.xyz.contracts;
 
 import com.xyz.constants.CreditScoreDesc;
 import com.xyz.states.CreditRatingState;
-import net.corda.core.contracts.Command;
+import com.xyz.states.LoanApplicationState;
+import net.corda.core.contracts.CommandWithParties;
 import net.corda.core.contracts.CommandData;
 import net.corda.core.contracts.Contract;
 import net.corda.core.transactions.LedgerTransaction;
@@ -17,10 +18,13 @@ public class CreditRatingCheckContract implements Contract {
 
     @Override
     public void verify(@NotNull LedgerTransaction tx) throws IllegalArgumentException {
-        if (tx != null && tx.getCommands().size() != 1)
-            throw new IllegalArgumentException("More than one command for Single Transaction : INVALID");
+        // Only the credit check commands are ours, the loan application recorded with the credit check initiation or
+        // rating carries its own command too.
+        List<CommandWithParties<Commands>> commands = tx.commandsOfType(Commands.class);
+        if (commands.size() != 1)
+            throw new IllegalArgumentException("More than one credit check command for Single Transaction : INVALID");
 
-        Command command = tx.getCommand(0);
+        CommandWithParties<Commands> command = commands.get(0);
         List<PublicKey> requiredSigners = command.getSigners();
         CommandData commandType = command.getValue();
 
@@ -33,13 +37,18 @@ public class CreditRatingCheckContract implements Contract {
 
     private void verifyCreditCheckInitiation(LedgerTransaction tx, List<PublicKey> requiredSigners) {
         requireThat(req -> {
-            req.using("Two transaction signer expected", requiredSigners.size() == 2);
-            req.using("Only one output should be created during the process CreditRatingState", tx.getOutputStates().size() == 1);
+            List<CreditRatingState> outputStates = tx.outputsOfType(CreditRatingState.class);
 
-            req.using("Output state shall be of type CreditRatingState", tx.getOutput(0) instanceof CreditRatingState);
-            req.using("No input should be consumed while initiating loan verification", tx.getInputStates().isEmpty());
+            req.using("Two transaction signer expected", requiredSigners.size() == 2);
+            req.using("Only one CreditRatingState output should be created during the process CreditRatingState", outputStates.size() == 1);
+            req.using("No CreditRatingState input should be consumed while initiating loan verification", tx.inputsOfType(CreditRatingState.class).isEmpty());
+            // The loan application forwarded to the credit check may be recorded in the same transaction.
+            req.using("Only a LoanApplicationState can be created along the CreditRatingState",
+                    tx.getOutputStates().size() == 1 + tx.outputsOfType(LoanApplicationState.class).size());
+            req.using("Only a LoanApplicationState can be consumed while initiating loan verification",
+                    tx.getInputStates().size() == tx.inputsOfType(LoanApplicationState.class).size());
 
-            CreditRatingState creditRatingState = (CreditRatingState) tx.getOutput(0);
+            CreditRatingState creditRatingState = outputStates.get(0);
 
             req.using("Finanace agency signature not present in the transaction", requiredSigners.contains(creditRatingState.getLoaningAgency().getOwningKey()));
             req.using("Credit agency signature not present in the transaction", requiredSigners.contains(creditRatingState.getCreditAgencyNode().getOwningKey()));
@@ -54,14 +63,20 @@ public class CreditRatingCheckContract implements Contract {
 
     private void verifyCreditCheckProcessed(LedgerTransaction tx, List<PublicKey> requiredSigners) {
         requireThat(req -> {
-            req.using("Two transaction signer expected", requiredSigners.size() == 2);
-            req.using("Only one output should be created during the process CreditRatingState", tx.getOutputStates().size() == 1);
+            List<CreditRatingState> inputStates = tx.inputsOfType(CreditRatingState.class);
+            List<CreditRatingState> outputStates = tx.outputsOfType(CreditRatingState.class);
 
-            req.using("Output state shall be of type CreditRatingState", tx.getOutput(0) instanceof CreditRatingState);
-            req.using("Input state shall be of type CreditRatingState", tx.getInput(0) instanceof CreditRatingState);
-
-            CreditRatingState inC = (CreditRatingState) tx.getInput(0);
-            CreditRatingState opC = (CreditRatingState) tx.getOutput(0);
+            req.using("Two transaction signer expected", requiredSigners.size() == 2);
+            req.using("Only one CreditRatingState output should be created during the process CreditRatingState", outputStates.size() == 1);
+            req.using("Only one CreditRatingState input should be consumed during the process CreditRatingState", inputStates.size() == 1);
+            // The loan application updated from the rating may be recorded in the same transaction.
+            req.using("Only a LoanApplicationState can be created along the CreditRatingState",
+                    tx.getOutputStates().size() == 1 + tx.outputsOfType(LoanApplicationState.class).size());
+            req.using("Only a LoanApplicationState can be consumed along the CreditRatingState",
+                    tx.getInputStates().size() == 1 + tx.inputsOfType(LoanApplicationState.class).size());
+
+            CreditRatingState inC = inputStates.get(0);
+            CreditRatingState opC = outputStates.get(0);
 
             req.using("Finanace agency signature not present in the transaction", requiredSigners.contains(opC.getLoaningAgency().getOwningKey()));
             req.using("Credit agency signature not present in the transaction", requiredSigners.contains(opC.getCreditAgencyNode().getOwningKey()));
@@ -3,18 +3,26 @@ package com.xyz.contracts;
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
 import java.security.PublicKey;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.xyz.constants.BankProcessingStatus;
+import com.xyz.constants.CreditScoreDesc;
 import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.states.BankFinanceState;
+import com.xyz.states.CreditRatingState;
 import com.xyz.states.LoanApplicationState;
 
-import net.corda.core.contracts.Command;
+import net.corda.core.contracts.CommandWithParties;
 import net.corda.core.contracts.CommandData;
 import net.corda.core.contracts.Contract;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.transactions.LedgerTransaction;
 
 public class LoanApplicationContract implements Contract {
@@ -22,10 +30,13 @@ public class LoanApplicationContract implements Contract {
 
 	@Override
 	public void verify(@NotNull LedgerTransaction tx) throws IllegalArgumentException {
-		if (tx != null && tx.getCommands().size() != 1)
-			throw new IllegalArgumentException("More than one command for Single Transaction : INVALID");
+		// Only the loan application commands are ours, the credit check and bank processing steps recorded with the
+		// application carry their own command too.
+		List<CommandWithParties<Commands>> commands = tx.commandsOfType(Commands.class);
+		if (commands.size() != 1)
+			throw new IllegalArgumentException("More than one loan application command for Single Transaction : INVALID");
 
-		Command command = tx.getCommand(0);
+		CommandWithParties<Commands> command = commands.get(0);
 		List<PublicKey> requiredSigners = command.getSigners();
 		CommandData commandType = command.getValue();
 
@@ -46,115 +57,214 @@ public class LoanApplicationContract implements Contract {
 	private void verifyLoanApplication(LedgerTransaction tx, List<PublicKey> requiredSigners) {
 		requireThat(req -> {
 			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
-			req.using("Only one output should be created during the process LoanApplication",
-					tx.getOutputStates().size() == 1);
-
-			req.using("Output state shall be of type LoanApplicationState",
-					tx.getOutput(0) instanceof LoanApplicationState);
+			req.using("At least one output should be created during the process LoanApplication",
+					!tx.getOutputStates().isEmpty());
 			req.using("No input should be consumed while initiating loan", tx.getInputStates().isEmpty());
 
-			LoanApplicationState applicationState = (LoanApplicationState) tx.getOutput(0);
-
-			req.using("Finanace agency signature not present in the transaction",
-					requiredSigners.contains(applicationState.getFinanceAgencyNode().getOwningKey()));
-			req.using("Initial state shall be {APPLIED} ",
-					applicationState.getApplicationStatus() == LoanApplicationStatus.APPLIED);
-			req.using("Minimum Loan amount Validation failed", applicationState.getLoanAmount() > 0);
-			req.using("Borrowing Company name cant be Empty",
-					applicationState.getCompanyName() != null || !applicationState.getCompanyName().equals(""));
-			req.using("Borrowing Company`s Business Type cant be Empty",
-					applicationState.getBusinessType() != null || !applicationState.getBusinessType().equals(""));
+			Set<UniqueIdentifier> applicationIds = new HashSet<>();
+			for (ContractState output : tx.getOutputStates()) {
+				req.using("Output state shall be of type LoanApplicationState", output instanceof LoanApplicationState);
+
+				LoanApplicationState applicationState = (LoanApplicationState) output;
+
+				req.using("Finanace agency signature not present in the transaction",
+						requiredSigners.contains(applicationState.getFinanceAgencyNode().getOwningKey()));
+				req.using("Initial state shall be {APPLIED} ",
+						applicationState.getApplicationStatus() == LoanApplicationStatus.APPLIED);
+				req.using("Minimum Loan amount Validation failed",
+						applicationState.getLoanAmount() != null && applicationState.getLoanAmount() > 0);
+				req.using("Borrowing Company name cant be Empty",
+						applicationState.getCompanyName() != null && !applicationState.getCompanyName().equals(""));
+				req.using("Borrowing Company`s Business Type cant be Empty",
+						applicationState.getBusinessType() != null && !applicationState.getBusinessType().equals(""));
+				req.using("Loan application ids shall be unique within the transaction",
+						applicationIds.add(applicationState.getLoanApplicationId()));
+			}
 			return null;
 		});
 	}
 
+	/**
+	 * The forwarded application is either recorded on its own, after the credit check was initiated, or in the same
+	 * transaction as the credit check it is forwarded to.
+	 */
 	private void verifyLoanStatusChangeOnCAForward(LedgerTransaction tx, List<PublicKey> requiredSigners) {
 		requireThat(req -> {
-			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
-			req.using("Only one output should be created during the process LoanApplication",
-					tx.getOutputStates().size() == 1);
-
-			req.using("Output state shall be of type LoanApplicationState",
-					tx.getOutput(0) instanceof LoanApplicationState);
-			req.using("Input state shall be of type LoanApplicationState",
-					tx.getInput(0) instanceof LoanApplicationState);
+			List<LoanApplicationState> inputStates = tx.inputsOfType(LoanApplicationState.class);
+			List<LoanApplicationState> outputStates = tx.outputsOfType(LoanApplicationState.class);
+			List<CreditRatingState> creditRatingStates = tx.outputsOfType(CreditRatingState.class);
 
-			LoanApplicationState inputState = (LoanApplicationState) tx.getInput(0);
-			LoanApplicationState outputState = (LoanApplicationState) tx.getOutput(0);
+			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
+			req.using("Only one LoanApplicationState output should be created during the process LoanApplication",
+					outputStates.size() == 1);
+			req.using("Only one LoanApplicationState input should be consumed during the process LoanApplication",
+					inputStates.size() == 1);
+			req.using("Only a CreditRatingState can be created along the forwarded LoanApplicationState",
+					tx.getOutputStates().size() == 1 + creditRatingStates.size() && creditRatingStates.size() <= 1);
+			req.using("Only the LoanApplicationState can be consumed during the process LoanApplication",
+					tx.getInputStates().size() == 1);
+
+			LoanApplicationState inputState = inputStates.get(0);
+			LoanApplicationState outputState = outputStates.get(0);
 
 			req.using("Input Loan application status shall be APPLIED",
 					inputState.getApplicationStatus() == LoanApplicationStatus.APPLIED);
 			req.using("Output Loan application status shall be FORWARDED_TO_CREDIT_CHECK_AGENCY",
 					outputState.getApplicationStatus() == LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY);
-
+			req.using("Loan application id shall not change",
+					inputState.getLoanApplicationId().equals(outputState.getLoanApplicationId()));
+			req.using("Finanace agency signature not present in the transaction",
+					requiredSigners.contains(outputState.getFinanceAgencyNode().getOwningKey()));
+
+			if (!creditRatingStates.isEmpty()) {
+				CreditRatingState creditRatingState = creditRatingStates.get(0);
+				req.using("Loan application shall be forwarded to the credit check created with it",
+						creditRatingState.getLoanVerificationId().equals(outputState.getLoanVerificationId()));
+				req.using("Credit check shall be requested by the finance agency of the loan application",
+						creditRatingState.getLoaningAgency().equals(outputState.getFinanceAgencyNode()));
+			}
 			return null;
 		});
 	}
 
+	/**
+	 * The credit check outcome is either recorded by the finance agency on its own, after the credit check was rated,
+	 * or in the same transaction as the rating of the credit check the application was forwarded to.
+	 */
 	private void verifyLoanStatusOnProcessingFromCA(LedgerTransaction tx, List<PublicKey> requiredSigners) {
 		requireThat(req -> {
-			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
-			req.using("Only one output should be created during the process LoanApplication",
-					tx.getOutputStates().size() == 1);
-
-			req.using("Output state shall be of type LoanApplicationState",
-					tx.getOutput(0) instanceof LoanApplicationState);
-			req.using("Input state shall be of type LoanApplicationState",
-					tx.getInput(0) instanceof LoanApplicationState);
+			List<LoanApplicationState> inputStates = tx.inputsOfType(LoanApplicationState.class);
+			List<LoanApplicationState> outputStates = tx.outputsOfType(LoanApplicationState.class);
+			List<CreditRatingState> creditRatingStates = tx.outputsOfType(CreditRatingState.class);
 
-			LoanApplicationState inputState = (LoanApplicationState) tx.getInput(0);
-			LoanApplicationState outputState = (LoanApplicationState) tx.getOutput(0);
+			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
+			req.using("Only one LoanApplicationState output should be created during the process LoanApplication",
+					outputStates.size() == 1);
+			req.using("Only one LoanApplicationState input should be consumed during the process LoanApplication",
+					inputStates.size() == 1);
+			req.using("Only a CreditRatingState can be created along the LoanApplicationState",
+					tx.getOutputStates().size() == 1 + creditRatingStates.size() && creditRatingStates.size() <= 1);
+			req.using("Only a CreditRatingState can be consumed along the LoanApplicationState",
+					tx.getInputStates().size() == 1 + tx.inputsOfType(CreditRatingState.class).size()
+							&& tx.getInputStates().size() == 1 + creditRatingStates.size());
+
+			LoanApplicationState inputState = inputStates.get(0);
+			LoanApplicationState outputState = outputStates.get(0);
 
 			req.using("Input Loan application status shall be FORWARDED_TO_CREDIT_CHECK_AGENCY",
 					inputState.getApplicationStatus() == LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY);
 			req.using("Output Loan application status shall be CREDIT_SCORE_CHECK_FAILED OR CREDIT_SCORE_CHECK_PASSED",
 					outputState.getApplicationStatus() == LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS
 							|| outputState.getApplicationStatus() == LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED);
+
+			if (!creditRatingStates.isEmpty()) {
+				CreditRatingState creditRatingState = creditRatingStates.get(0);
+				req.using("Finanace agency signature not present in the transaction",
+						requiredSigners.contains(outputState.getFinanceAgencyNode().getOwningKey()));
+				req.using("Loan application id shall not change",
+						inputState.getLoanApplicationId().equals(outputState.getLoanApplicationId()));
+				req.using("Loan application shall be updated from the credit check it was forwarded to",
+						creditRatingState.getLoanVerificationId().equals(inputState.getLoanVerificationId())
+								&& creditRatingState.getLoanVerificationId().equals(outputState.getLoanVerificationId()));
+				req.using("Credit check shall be rated for the finance agency of the loan application",
+						creditRatingState.getLoaningAgency().equals(outputState.getFinanceAgencyNode()));
+				req.using("Loan application status shall follow the credit score description",
+						(creditRatingState.getCreditScoreDesc() == CreditScoreDesc.GOOD
+								|| creditRatingState.getCreditScoreDesc() == CreditScoreDesc.FAIR)
+								== (outputState.getApplicationStatus() == LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS));
+			}
 			return null;
 		});
 	}
 
+	/**
+	 * The forwarded application is either recorded on its own, after the bank processing was initiated, or in the
+	 * same transaction as the bank processing it is forwarded to.
+	 */
 	private void verifyLoanStatusChangeOnBankForward(LedgerTransaction tx, List<PublicKey> requiredSigners) {
 		requireThat(req -> {
-			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
-			req.using("Only one output should be created during the process LoanApplication",
-					tx.getOutputStates().size() == 1);
+			List<LoanApplicationState> inputStates = tx.inputsOfType(LoanApplicationState.class);
+			List<LoanApplicationState> outputStates = tx.outputsOfType(LoanApplicationState.class);
+			List<BankFinanceState> bankFinanceStates = tx.outputsOfType(BankFinanceState.class);
 
-			req.using("Output state shall be of type LoanApplicationState",
-					tx.getOutput(0) instanceof LoanApplicationState);
-			req.using("Input state shall be of type LoanApplicationState",
-					tx.getInput(0) instanceof LoanApplicationState);
-
-			LoanApplicationState inputState = (LoanApplicationState) tx.getInput(0);
-			LoanApplicationState outputState = (LoanApplicationState) tx.getOutput(0);
+			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
+			req.using("Only one LoanApplicationState output should be created during the process LoanApplication",
+					outputStates.size() == 1);
+			req.using("Only one LoanApplicationState input should be consumed during the process LoanApplication",
+					inputStates.size() == 1);
+			req.using("Only a BankFinanceState can be created along the forwarded LoanApplicationState",
+					tx.getOutputStates().size() == 1 + bankFinanceStates.size() && bankFinanceStates.size() <= 1);
+			req.using("Only the LoanApplicationState can be consumed during the process LoanApplication",
+					tx.getInputStates().size() == 1);
+
+			LoanApplicationState inputState = inputStates.get(0);
+			LoanApplicationState outputState = outputStates.get(0);
 
 			req.using("Input Loan application status shall be CREDIT_SCORE_CHECK_PASS",
 					inputState.getApplicationStatus() == LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS);
 			req.using("Output Loan application status shall be FORWARDED_TO_BANK",
 					outputState.getApplicationStatus() == LoanApplicationStatus.FORWARDED_TO_BANK);
+			req.using("Loan application id shall not change",
+					inputState.getLoanApplicationId().equals(outputState.getLoanApplicationId()));
+			req.using("Finanace agency signature not present in the transaction",
+					requiredSigners.contains(outputState.getFinanceAgencyNode().getOwningKey()));
+
+			if (!bankFinanceStates.isEmpty()) {
+				BankFinanceState bankFinanceState = bankFinanceStates.get(0);
+				req.using("Loan application shall be forwarded to the bank processing created with it",
+						bankFinanceState.getBankLoanProcessingId().equals(outputState.getBankProcessingId()));
+				req.using("Bank processing shall be requested by the finance agency of the loan application",
+						bankFinanceState.getFinanceAgencyNode().equals(outputState.getFinanceAgencyNode()));
+			}
 			return null;
 		});
 	}
 
+	/**
+	 * The bank decision is either recorded by the finance agency on its own, after the bank processed the loan, or in
+	 * the same transaction as the processing of the bank processing the application was forwarded to.
+	 */
 	private void verifyLoanStatusChangeOnProcessingFromBank(LedgerTransaction tx, List<PublicKey> requiredSigners) {
 		requireThat(req -> {
-			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
-			req.using("Only one output should be created during the process LoanApplication",
-					tx.getOutputStates().size() == 1);
-
-			req.using("Output state shall be of type LoanApplicationState",
-					tx.getOutput(0) instanceof LoanApplicationState);
-			req.using("Input state shall be of type LoanApplicationState",
-					tx.getInput(0) instanceof LoanApplicationState);
+			List<LoanApplicationState> inputStates = tx.inputsOfType(LoanApplicationState.class);
+			List<LoanApplicationState> outputStates = tx.outputsOfType(LoanApplicationState.class);
+			List<BankFinanceState> bankFinanceStates = tx.outputsOfType(BankFinanceState.class);
 
-			LoanApplicationState inputState = (LoanApplicationState) tx.getInput(0);
-			LoanApplicationState outputState = (LoanApplicationState) tx.getOutput(0);
+			req.using("Only one transaction signer expected", requiredSigners.size() == 1);
+			req.using("Only one LoanApplicationState output should be created during the process LoanApplication",
+					outputStates.size() == 1);
+			req.using("Only one LoanApplicationState input should be consumed during the process LoanApplication",
+					inputStates.size() == 1);
+			req.using("Only a BankFinanceState can be created along the LoanApplicationState",
+					tx.getOutputStates().size() == 1 + bankFinanceStates.size() && bankFinanceStates.size() <= 1);
+			req.using("Only a BankFinanceState can be consumed along the LoanApplicationState",
+					tx.getInputStates().size() == 1 + tx.inputsOfType(BankFinanceState.class).size()
+							&& tx.getInputStates().size() == 1 + bankFinanceStates.size());
+
+			LoanApplicationState inputState = inputStates.get(0);
+			LoanApplicationState outputState = outputStates.get(0);
 
 			req.using("Input Loan application status shall be FORWARDED_TO_BANK",
 					inputState.getApplicationStatus() == LoanApplicationStatus.FORWARDED_TO_BANK);
 			req.using("Output Loan application status shall be REJECTED_FROM_BANK OR LOAN_DISBURSED",
 					outputState.getApplicationStatus() == LoanApplicationStatus.LOAN_DISBURSED
 							|| outputState.getApplicationStatus() == LoanApplicationStatus.REJECTED_FROM_BANK);
+
+			if (!bankFinanceStates.isEmpty()) {
+				BankFinanceState bankFinanceState = bankFinanceStates.get(0);
+				req.using("Finanace agency signature not present in the transaction",
+						requiredSigners.contains(outputState.getFinanceAgencyNode().getOwningKey()));
+				req.using("Loan application id shall not change",
+						inputState.getLoanApplicationId().equals(outputState.getLoanApplicationId()));
+				req.using("Loan application shall be updated from the bank processing it was forwarded to",
+						bankFinanceState.getBankLoanProcessingId().equals(inputState.getBankProcessingId())
+								&& bankFinanceState.getBankLoanProcessingId().equals(outputState.getBankProcessingId()));
+				req.using("Bank processing shall be decided for the finance agency of the loan application",
+						bankFinanceState.getFinanceAgencyNode().equals(outputState.getFinanceAgencyNode()));
+				req.using("Loan application status shall follow the bank processing status",
+						(bankFinanceState.getBankProcessingStatus() == BankProcessingStatus.PROCESSED)
+								== (outputState.getApplicationStatus() == LoanApplicationStatus.LOAN_DISBURSED));
+			}
 			return null;
 		});
 	}
@@ -0,0 +1,460 @@
+package com.xyz.contracts;
+
+import com.xyz.constants.BankProcessingStatus;
+import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.states.BankFinanceState;
+import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.testing.core.TestIdentity;
+import net.corda.testing.dsl.TestTransactionDSLInterpreter;
+import net.corda.testing.dsl.TransactionDSL;
+import net.corda.testing.node.MockServices;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static net.corda.testing.node.NodeTestUtils.ledger;
+
+/**
+ * Verifies the batches of loan applications, and the loan application recorded in the same transaction as the credit
+ * check or bank processing step it moves through.
+ */
+public class LoanApplicationContractTest {
+    private static final TestIdentity financeAgency = new TestIdentity(new CordaX500Name("XYZLoaning", "London", "GB"));
+    private static final TestIdentity otherFinanceAgency = new TestIdentity(new CordaX500Name("OtherLoaning", "London", "GB"));
+    private static final TestIdentity creditAgency = new TestIdentity(new CordaX500Name("NewShireCreditRatingAgency", "New York", "US"));
+    private static final TestIdentity bank = new TestIdentity(new CordaX500Name("MTCBank", "New York", "US"));
+
+    private final MockServices ledgerServices = new MockServices(Arrays.asList("com.xyz.contracts"));
+    private final UniqueIdentifier loanApplicationId = new UniqueIdentifier();
+    private final UniqueIdentifier loanVerificationId = new UniqueIdentifier();
+    private final UniqueIdentifier bankProcessingId = new UniqueIdentifier();
+
+    @Test
+    public void batchOfValidApplicationsVerifies() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("XYZ Retail", 10000L));
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("ABC Foods", 25000L));
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("DEF Logistics", 5000L));
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplied());
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void batchIsRejectedForASingleInvalidApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("XYZ Retail", 10000L));
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("ABC Foods", 0L));
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("DEF Logistics", 5000L));
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplied());
+                return tx.failsWith("Minimum Loan amount Validation failed");
+            });
+            l.transaction(tx -> {
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("XYZ Retail", 10000L));
+                tx.output(LoanApplicationContract.class.getName(), appliedApplication("", 25000L));
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplied());
+                return tx.failsWith("Borrowing Company name cant be Empty");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void batchCannotRepeatAnApplicationId() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.output(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.output(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplied());
+                return tx.failsWith("Loan application ids shall be unique within the transaction");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void emptyBatchIsRejected() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplied());
+                // Corda refuses a transaction without any state before the contract verifies its outputs.
+                return tx.fails();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void creditCheckInitiationWithForwardedApplicationVerifies() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.output(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(financeAgency));
+                tx.output(LoanApplicationContract.class.getName(), forwardedToCreditCheck(loanVerificationId));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), creditAgency.getPublicKey()),
+                        new CreditRatingCheckContract.Commands.CreditCheckInitiation());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanForwardedToCreditCheck());
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void forwardedApplicationMustCarryTheVerificationIdOfItsCreditCheck() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.output(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(financeAgency));
+                tx.output(LoanApplicationContract.class.getName(), forwardedToCreditCheck(new UniqueIdentifier()));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), creditAgency.getPublicKey()),
+                        new CreditRatingCheckContract.Commands.CreditCheckInitiation());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanForwardedToCreditCheck());
+                return tx.failsWith("Loan application shall be forwarded to the credit check created with it");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void creditCheckMustBeRequestedByTheFinanceAgencyOfTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.output(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(otherFinanceAgency));
+                tx.output(LoanApplicationContract.class.getName(), forwardedToCreditCheck(loanVerificationId));
+                tx.command(Arrays.asList(otherFinanceAgency.getPublicKey(), creditAgency.getPublicKey()),
+                        new CreditRatingCheckContract.Commands.CreditCheckInitiation());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanForwardedToCreditCheck());
+                return tx.failsWith("Credit check shall be requested by the finance agency of the loan application");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void onlyOneCreditCheckCanBeCreatedAlongTheForwardedApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.output(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(financeAgency));
+                tx.output(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(financeAgency));
+                tx.output(LoanApplicationContract.class.getName(), forwardedToCreditCheck(loanVerificationId));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), creditAgency.getPublicKey()),
+                        new CreditRatingCheckContract.Commands.CreditCheckInitiation());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanForwardedToCreditCheck());
+                // Both contracts reject the second credit check, whichever of them is verified first.
+                return tx.fails();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void forwardedApplicationMustBeSignedByItsFinanceAgency() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.APPLIED, null));
+                tx.output(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(financeAgency));
+                tx.output(LoanApplicationContract.class.getName(), forwardedToCreditCheck(loanVerificationId));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), creditAgency.getPublicKey()),
+                        new CreditRatingCheckContract.Commands.CreditCheckInitiation());
+                tx.command(creditAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanForwardedToCreditCheck());
+                return tx.failsWith("Finanace agency signature not present in the transaction");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void bankProcessingInitiationWithForwardedApplicationVerifies() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, loanVerificationId));
+                tx.output(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.output(LoanApplicationContract.class.getName(), forwardedToBank(bankProcessingId));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), bank.getPublicKey()),
+                        new BankFinanceValidationContract.Commands.BankProcessingInitiated());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplicationForwaredToBank());
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void onlyApplicationsThatPassedTheCreditCheckCanBeForwardedToTheBank() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED, loanVerificationId));
+                tx.output(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.output(LoanApplicationContract.class.getName(), forwardedToBank(bankProcessingId));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), bank.getPublicKey()),
+                        new BankFinanceValidationContract.Commands.BankProcessingInitiated());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplicationForwaredToBank());
+                return tx.failsWith("Input Loan application status shall be CREDIT_SCORE_CHECK_PASS");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void onlyOneBankProcessingCanBeCreatedAlongTheForwardedApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, loanVerificationId));
+                tx.output(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.output(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.output(LoanApplicationContract.class.getName(), forwardedToBank(bankProcessingId));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), bank.getPublicKey()),
+                        new BankFinanceValidationContract.Commands.BankProcessingInitiated());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplicationForwaredToBank());
+                // Both contracts reject the second bank processing, whichever of them is verified first.
+                return tx.fails();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void forwardedApplicationMustCarryTheIdOfItsBankProcessing() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(LoanApplicationContract.class.getName(), application(LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, loanVerificationId));
+                tx.output(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.output(LoanApplicationContract.class.getName(), forwardedToBank(new UniqueIdentifier()));
+                tx.command(Arrays.asList(financeAgency.getPublicKey(), bank.getPublicKey()),
+                        new BankFinanceValidationContract.Commands.BankProcessingInitiated());
+                tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanApplicationForwaredToBank());
+                return tx.failsWith("Loan application shall be forwarded to the bank processing created with it");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void goodCreditScorePassesTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                rateCreditCheck(tx, CreditScoreDesc.GOOD, LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, financeAgency);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void fairCreditScorePassesTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                rateCreditCheck(tx, CreditScoreDesc.FAIR, LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, financeAgency);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void poorCreditScoreFailsTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                rateCreditCheck(tx, CreditScoreDesc.POOR, LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED, financeAgency);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void poorCreditScoreCannotPassTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                rateCreditCheck(tx, CreditScoreDesc.POOR, LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, financeAgency);
+                return tx.failsWith("Loan application status shall follow the credit score description");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void goodCreditScoreCannotFailTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                rateCreditCheck(tx, CreditScoreDesc.GOOD, LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED, financeAgency);
+                return tx.failsWith("Loan application status shall follow the credit score description");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void creditCheckCannotUpdateAnApplicationOfAnotherFinanceAgency() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                rateCreditCheck(tx, CreditScoreDesc.GOOD, LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS, otherFinanceAgency);
+                return tx.failsWith("Credit check shall be rated for the finance agency of the loan application");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void processedBankLoanDisbursesTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                processBankLoan(tx, BankProcessingStatus.PROCESSED, LoanApplicationStatus.LOAN_DISBURSED, bankProcessingId);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void rejectedBankLoanRejectsTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                processBankLoan(tx, BankProcessingStatus.REJECTED, LoanApplicationStatus.REJECTED_FROM_BANK, bankProcessingId);
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void rejectedBankLoanCannotDisburseTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                processBankLoan(tx, BankProcessingStatus.REJECTED, LoanApplicationStatus.LOAN_DISBURSED, bankProcessingId);
+                return tx.failsWith("Loan application status shall follow the bank processing status");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void bankProcessingCannotUpdateAnApplicationForwardedToAnotherBankProcessing() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                processBankLoan(tx, BankProcessingStatus.PROCESSED, LoanApplicationStatus.LOAN_DISBURSED, new UniqueIdentifier());
+                return tx.failsWith("Loan application shall be updated from the bank processing it was forwarded to");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void bankProcessingCannotUpdateAnApplicationOfAnotherFinanceAgency() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.input(LoanApplicationContract.class.getName(), application(otherFinanceAgency,
+                        LoanApplicationStatus.FORWARDED_TO_BANK, loanVerificationId, bankProcessingId));
+                tx.output(BankFinanceValidationContract.class.getName(), processedBankProcessing(BankProcessingStatus.PROCESSED));
+                tx.output(LoanApplicationContract.class.getName(), application(otherFinanceAgency,
+                        LoanApplicationStatus.LOAN_DISBURSED, loanVerificationId, bankProcessingId));
+                tx.command(Arrays.asList(bank.getPublicKey(), financeAgency.getPublicKey()),
+                        new BankFinanceValidationContract.Commands.LoanRequestProcessed());
+                tx.command(otherFinanceAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanProcessedFromBank());
+                return tx.failsWith("Bank processing shall be decided for the finance agency of the loan application");
+            });
+            return null;
+        });
+    }
+
+    @Test
+    public void bankProcessingCanBeRecordedWithoutTheApplication() {
+        ledger(ledgerServices, l -> {
+            l.transaction(tx -> {
+                tx.input(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+                tx.output(BankFinanceValidationContract.class.getName(), processedBankProcessing(BankProcessingStatus.PROCESSED));
+                tx.command(Arrays.asList(bank.getPublicKey(), financeAgency.getPublicKey()),
+                        new BankFinanceValidationContract.Commands.LoanRequestProcessed());
+                return tx.verifies();
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Rates the credit check of the finance agency and moves the forwarded application of the given owner to the
+     * given status in the same transaction.
+     */
+    private void rateCreditCheck(TransactionDSL<TestTransactionDSLInterpreter> tx, CreditScoreDesc scoreDesc,
+                                 LoanApplicationStatus status, TestIdentity applicant) {
+        tx.input(CreditRatingCheckContract.class.getName(), initiatedCreditCheck(financeAgency));
+        tx.input(LoanApplicationContract.class.getName(), application(applicant,
+                LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY, loanVerificationId, null));
+        tx.output(CreditRatingCheckContract.class.getName(), new CreditRatingState(financeAgency.getParty(),
+                creditAgency.getParty(), "XYZ Retail", "Retail", 10000L, 8.0, scoreDesc, loanVerificationId));
+        tx.output(LoanApplicationContract.class.getName(), application(applicant, status, loanVerificationId, null));
+        tx.command(Arrays.asList(creditAgency.getPublicKey(), financeAgency.getPublicKey()),
+                new CreditRatingCheckContract.Commands.CreditCheckProcessed());
+        tx.command(applicant.getPublicKey(), new LoanApplicationContract.Commands.LoanProcesedFromCreditCheck());
+    }
+
+    /**
+     * Processes the bank processing of the finance agency and moves the application forwarded to the given bank
+     * processing to the given status in the same transaction.
+     */
+    private void processBankLoan(TransactionDSL<TestTransactionDSLInterpreter> tx, BankProcessingStatus processingStatus,
+                                 LoanApplicationStatus status, UniqueIdentifier processingId) {
+        tx.input(BankFinanceValidationContract.class.getName(), initiatedBankProcessing());
+        tx.input(LoanApplicationContract.class.getName(), forwardedToBank(processingId));
+        tx.output(BankFinanceValidationContract.class.getName(), processedBankProcessing(processingStatus));
+        tx.output(LoanApplicationContract.class.getName(), application(status, loanVerificationId, processingId));
+        tx.command(Arrays.asList(bank.getPublicKey(), financeAgency.getPublicKey()),
+                new BankFinanceValidationContract.Commands.LoanRequestProcessed());
+        tx.command(financeAgency.getPublicKey(), new LoanApplicationContract.Commands.LoanProcessedFromBank());
+    }
+
+    private LoanApplicationState application(LoanApplicationStatus status, UniqueIdentifier verificationId) {
+        return application(status, verificationId, null);
+    }
+
+    private LoanApplicationState application(LoanApplicationStatus status, UniqueIdentifier verificationId,
+                                             UniqueIdentifier processingId) {
+        return application(financeAgency, status, verificationId, processingId);
+    }
+
+    private LoanApplicationState application(TestIdentity applicant, LoanApplicationStatus status,
+                                             UniqueIdentifier verificationId, UniqueIdentifier processingId) {
+        return new LoanApplicationState(applicant.getParty(), "XYZ Retail", "Retail", 10000L, status,
+                loanApplicationId, verificationId, processingId);
+    }
+
+    private LoanApplicationState appliedApplication(String companyName, Long loanAmount) {
+        return new LoanApplicationState(financeAgency.getParty(), companyName, "Retail", loanAmount,
+                LoanApplicationStatus.APPLIED, new UniqueIdentifier(), null, null);
+    }
+
+    private LoanApplicationState forwardedToCreditCheck(UniqueIdentifier verificationId) {
+        return application(LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY, verificationId);
+    }
+
+    private LoanApplicationState forwardedToBank(UniqueIdentifier processingId) {
+        return application(LoanApplicationStatus.FORWARDED_TO_BANK, loanVerificationId, processingId);
+    }
+
+    private CreditRatingState initiatedCreditCheck(TestIdentity loaningAgency) {
+        return new CreditRatingState(loaningAgency.getParty(), creditAgency.getParty(), "XYZ Retail", "Retail", 10000L,
+                0.0, CreditScoreDesc.UNSPECIFIED, loanVerificationId);
+    }
+
+    private BankFinanceState initiatedBankProcessing() {
+        return new BankFinanceState(financeAgency.getParty(), bank.getParty(), "XYZ Retail", "Retail", 10000L,
+                CreditScoreDesc.GOOD, BankProcessingStatus.IN_PROCESSING, bankProcessingId);
+    }
+
+    private BankFinanceState processedBankProcessing(BankProcessingStatus processingStatus) {
+        return new BankFinanceState(financeAgency.getParty(), bank.getParty(), "XYZ Retail", "Retail", 10000L,
+                CreditScoreDesc.GOOD, processingStatus, bankProcessingId);
+    }
+}
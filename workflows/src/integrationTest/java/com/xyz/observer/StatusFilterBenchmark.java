@@ -0,0 +1,164 @@
+package com.xyz.observer;
+
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.flows.fa.CreditCheckInitiationFlow;
+import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.states.LoanApplicationState;
+import com.xyz.states.schema.LoaningProcessSchemas;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.serialization.SerializationFactory;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.driver.DriverParameters;
+import net.corda.testing.driver.NodeHandle;
+import net.corda.testing.driver.NodeParameters;
+import net.corda.testing.node.TestCordapp;
+import net.corda.testing.node.User;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.corda.testing.driver.Driver.driver;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures what crossing RPC costs the finance agency webserver when it catches up on the loan applications it acts
+ * on, with the {@link StatusFilter} of its observer pushed into the vault query against the same catch-up reading every
+ * unconsumed application and testing the status in the webserver.
+ *
+ * Most applications are forwarded to the credit agency, so only {@code benchmark.applied-percent} of them are still
+ * actionable. The bytes are those of the vault pages serialized for RPC, the CPU time that of the test JVM, as the
+ * nodes run in their own processes. Only the catch-up is measured: the node filters the updates of a vault track on
+ * the state type alone, so the live feed carries the same updates with and without the filter.
+ */
+public class StatusFilterBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(StatusFilterBenchmark.class);
+    private static final CordaX500Name FINANCE_AGENCY = new CordaX500Name("XYZLoaning", "London", "GB");
+    private static final CordaX500Name CREDIT_AGENCY = new CordaX500Name("NewShireCreditRatingAgency", "New York", "US");
+    private static final int APPLICATIONS = Integer.getInteger("benchmark.applications", 500);
+    private static final int APPLIED_PERCENT = Integer.getInteger("benchmark.applied-percent", 10);
+    private static final int PAGE_SIZE = 200;
+
+    private final User rpcUser = new User("user1", "test", Collections.singleton("ALL"));
+
+    @Test
+    public void filteredCatchUpMovesOnlyActionableStatesOverRpc() {
+        driver(new DriverParameters().withIsDebug(false).withStartNodesInProcess(false)
+                .withCordappsForAllNodes(Arrays.asList(TestCordapp.findCordapp("com.xyz.contracts"),
+                        TestCordapp.findCordapp("com.xyz.flows"))), dsl -> {
+            try {
+                NodeHandle financeAgency = dsl.startNode(new NodeParameters().withProvidedName(FINANCE_AGENCY)
+                        .withRpcUsers(Collections.singletonList(rpcUser))).get();
+                NodeHandle creditAgency = dsl.startNode(new NodeParameters().withProvidedName(CREDIT_AGENCY)
+                        .withRpcUsers(Collections.singletonList(rpcUser))).get();
+                Party creditAgencyParty = creditAgency.getNodeInfo().getLegalIdentities().get(0);
+                CordaRPCOps proxy = financeAgency.getRpc();
+
+                int applied = 0;
+                for (int i = 0; i < APPLICATIONS; i++) {
+                    SignedTransaction tx = proxy.startFlowDynamic(LoanApplicationCreationFlow.class,
+                            "Company " + i, "Retail", 10000L).getReturnValue().get();
+                    UniqueIdentifier applicationId = ((LoanApplicationState) tx.getTx().getOutputs().get(0)
+                            .getData()).getLoanApplicationId();
+                    if (i % 100 < APPLIED_PERCENT)
+                        applied++;
+                    else
+                        proxy.startFlowDynamic(CreditCheckInitiationFlow.class, applicationId, creditAgencyParty)
+                                .getReturnValue().get();
+                }
+
+                StatusFilter<LoanApplicationState, LoanApplicationStatus> actionable = StatusFilter.of(
+                        LoaningProcessSchemas.PersistentLoanApplicationState.class, "applicationStatus",
+                        LoanApplicationState::getApplicationStatus, LoanApplicationStatus.APPLIED,
+                        LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS);
+                // Warms the RPC connection and the serializers up before either run is measured.
+                catchUp(proxy, actionable, true);
+                Result unfiltered = catchUp(proxy, actionable, false);
+                Result filtered = catchUp(proxy, actionable, true);
+
+                logger.info("Unfiltered catch-up : " + unfiltered);
+                logger.info("Filtered catch-up   : " + filtered);
+                assertEquals(applied, unfiltered.actionable);
+                assertEquals(applied, filtered.actionable);
+                assertEquals(applied, filtered.received);
+                assertTrue(filtered.bytes < unfiltered.bytes);
+            } catch (Exception e) {
+                throw new RuntimeException("Caught exception during benchmark : ", e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Pages through the unconsumed applications as the catch-up of the observer does, with or without the filter in
+     * the vault query, counting the bytes of the pages received over RPC.
+     */
+    private Result catchUp(CordaRPCOps proxy, StatusFilter<LoanApplicationState, LoanApplicationStatus> actionable,
+                           boolean filtered) {
+        AtomicLong bytes = new AtomicLong();
+        Result result = new Result();
+        long cpuBefore = processCpuNanos();
+        long startedAt = System.nanoTime();
+        new RecordedOrderPager(measured(proxy, bytes), new QueryCriteria.VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED, Collections.singleton(LoanApplicationState.class)),
+                filtered ? actionable.criteria() : null, PAGE_SIZE).forEach(null, null, (stateAndRef, recordedTime) -> {
+            result.received++;
+            if (actionable.test((LoanApplicationState) stateAndRef.getState().getData()))
+                result.actionable++;
+        });
+        result.wallMillis = (System.nanoTime() - startedAt) / 1000000;
+        result.cpuMillis = (processCpuNanos() - cpuBefore) / 1000000;
+        result.bytes = bytes.get();
+        return result;
+    }
+
+    /**
+     * Adds the serialized size of every vault page returned by the proxy to the counter.
+     */
+    private static CordaRPCOps measured(CordaRPCOps proxy, AtomicLong bytes) {
+        SerializationFactory factory = SerializationFactory.Companion.getDefaultFactory();
+        return (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(),
+                new Class<?>[]{CordaRPCOps.class}, (measuredProxy, method, args) -> {
+                    Object returned;
+                    try {
+                        returned = method.invoke(proxy, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (returned instanceof Vault.Page)
+                        bytes.addAndGet(factory.serialize(returned, factory.getDefaultContext()).getSize());
+                    return returned;
+                });
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private static class Result {
+        private long received;
+        private long actionable;
+        private long bytes;
+        private long wallMillis;
+        private long cpuMillis;
+
+        @Override
+        public String toString() {
+            return received + " states received, " + actionable + " actionable, " + bytes + " bytes, "
+                    + cpuMillis + " ms CPU, " + wallMillis + " ms";
+        }
+    }
+}
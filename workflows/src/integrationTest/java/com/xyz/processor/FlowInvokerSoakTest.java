@@ -0,0 +1,129 @@
+package com.xyz.processor;
+
+import com.xyz.processor.soak.SoakFlow;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.testing.driver.DriverParameters;
+import net.corda.testing.driver.NodeHandle;
+import net.corda.testing.driver.NodeParameters;
+import net.corda.testing.node.TestCordapp;
+import net.corda.testing.node.User;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.corda.testing.driver.Driver.driver;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Starts {@code soak.flows} flows through the {@link FlowInvoker}, untracked and tracked, and checks that the heap
+ * and the thread count of the webserver side stay flat once the RPC client is warmed up.
+ *
+ * The node runs in its own process, so the heap measured is that of the RPC client, where the feeds of a flow that
+ * is never closed pile up. The {@link SoakFlow} records nothing on the ledger, so the vault does not grow with the run.
+ */
+public class FlowInvokerSoakTest {
+    private static final Logger logger = LoggerFactory.getLogger(FlowInvokerSoakTest.class);
+    private static final CordaX500Name FINANCE_AGENCY = new CordaX500Name("XYZLoaning", "London", "GB");
+    private static final int FLOWS = Integer.getInteger("soak.flows", 1000000);
+    private static final int WARM_UP_FLOWS = Integer.getInteger("soak.warm-up-flows", 10000);
+    private static final int CLIENT_THREADS = Integer.getInteger("soak.client-threads", 8);
+    private static final int SAMPLES = 10;
+    private static final long MAX_HEAP_GROWTH_BYTES = Long.getLong("soak.max-heap-growth-mb", 32L) * 1024 * 1024;
+    private static final int MAX_THREAD_GROWTH = 4;
+
+    private final User rpcUser = new User("user1", "test", Collections.singleton("ALL"));
+
+    @Test
+    public void untrackedFlowsKeepTheHeapFlat() {
+        soak(false);
+    }
+
+    @Test
+    public void trackedFlowsKeepTheHeapFlat() {
+        soak(true);
+    }
+
+    private void soak(boolean tracked) {
+        driver(new DriverParameters().withIsDebug(false).withStartNodesInProcess(false)
+                .withCordappsForAllNodes(Collections.singletonList(TestCordapp.findCordapp("com.xyz.processor.soak"))), dsl -> {
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+            try {
+                NodeHandle financeAgency = dsl.startNode(new NodeParameters().withProvidedName(FINANCE_AGENCY)
+                        .withRpcUsers(Collections.singletonList(rpcUser))).get();
+                FlowInvoker flowInvoker = new FlowInvoker(financeAgency.getRpc());
+                AtomicLong progressSteps = new AtomicLong();
+
+                run(clients, flowInvoker, tracked, progressSteps, WARM_UP_FLOWS);
+                long baselineHeap = usedHeapAfterGc();
+                int baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+                logger.info((tracked ? "Tracked" : "Untracked") + " soak baseline : " + baselineHeap / 1024
+                        + " KB heap, " + baselineThreads + " threads");
+
+                long maxHeap = baselineHeap;
+                for (int sample = 1; sample <= SAMPLES; sample++) {
+                    run(clients, flowInvoker, tracked, progressSteps, FLOWS / SAMPLES);
+                    long heap = usedHeapAfterGc();
+                    maxHeap = Math.max(maxHeap, heap);
+                    logger.info((tracked ? "Tracked" : "Untracked") + " soak after " + sample * (FLOWS / SAMPLES)
+                            + " flows : " + heap / 1024 + " KB heap, "
+                            + ManagementFactory.getThreadMXBean().getThreadCount() + " threads");
+                }
+
+                assertTrue("Heap grew by " + (maxHeap - baselineHeap) / 1024 + " KB",
+                        maxHeap - baselineHeap < MAX_HEAP_GROWTH_BYTES);
+                assertTrue(ManagementFactory.getThreadMXBean().getThreadCount() <= baselineThreads + MAX_THREAD_GROWTH);
+                if (tracked)
+                    assertTrue(progressSteps.get() > 0);
+                else
+                    assertEquals(0, progressSteps.get());
+            } catch (Exception e) {
+                throw new RuntimeException("Caught exception during soak test : ", e);
+            } finally {
+                clients.shutdownNow();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Starts the given number of flows, spread over the client threads as the processors of the webservers do.
+     */
+    private static void run(ExecutorService clients, FlowInvoker flowInvoker, boolean tracked,
+                            AtomicLong progressSteps, int flows) throws Exception {
+        List<Future<?>> results = new ArrayList<>(CLIENT_THREADS);
+        for (int client = 0; client < CLIENT_THREADS; client++) {
+            int clientFlows = flows / CLIENT_THREADS + (client < flows % CLIENT_THREADS ? 1 : 0);
+            results.add(clients.submit(() -> {
+                for (int i = 0; i < clientFlows; i++) {
+                    Integer result = tracked
+                            ? flowInvoker.runTracked(step -> progressSteps.incrementAndGet(), SoakFlow.class, i)
+                            : flowInvoker.run(SoakFlow.class, i);
+                    assertEquals(Integer.valueOf(i), result);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results)
+            result.get();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
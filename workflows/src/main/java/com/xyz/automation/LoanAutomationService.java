@@ -0,0 +1,311 @@
+package com.xyz.automation;
+
+import com.xyz.constants.BankProcessingStatus;
+import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.flows.bank.BankLoanDisbursementFlow;
+import com.xyz.flows.ca.CreditCheckProcessingFlow;
+import com.xyz.flows.fa.BankLoanProcessingInitiationFlow;
+import com.xyz.flows.fa.CreditCheckInitiationFlow;
+import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.observer.KeyedObserverExecutor;
+import com.xyz.observer.RecordedOrderPager;
+import com.xyz.observer.StatusFilter;
+import com.xyz.states.BankFinanceState;
+import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
+import com.xyz.states.schema.LoaningProcessSchemas;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.cordapp.CordappConfig;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.ServiceLifecycleEvent;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.core.transactions.SignedTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Advances the loan applications from inside the nodes, as an alternative to the observers of the webservers.
+ *
+ * Enabled with {@code automation.enabled = true} in the CorDapp configuration of the workflows. Each node acts on the
+ * produced states it is responsible for, as recorded in its vault: the finance agency initiates the credit check of
+ * an APPLIED application and the bank processing of an application that passed it, and updates the application with
+ * the credit rating and bank decisions; the credit agency rates the credit checks; the bank processes the loans. The
+ * flows are started with the service hub on a bounded executor, one at a time per application, so a stage follows
+ * the previous one without an RPC round trip.
+ *
+ * The service follows the vault updates, which are published once the transaction is committed so the flows find
+ * the state they are started for, and on start catches up on the unconsumed states waiting for this node. States
+ * arriving while the queue of their worker is full wait in a pending queue, drained in order as the flows complete,
+ * so neither the vault update thread nor the catch-up blocks on the executor. Only the states beyond
+ * {@code automation.pending-capacity} are left to the next start of the node.
+ *
+ * The webservers ask the service with {@link LoanAutomationStatusFlow} on start and do not run their observers while
+ * it is enabled, so the two never act on the same states.
+ */
+@CordaService
+public class LoanAutomationService extends SingletonSerializeAsToken {
+    private static final Logger logger = LoggerFactory.getLogger(LoanAutomationService.class);
+    private static final int CATCH_UP_PAGE_SIZE = 200;
+    private static final int SUBMITTED_REFS_CAPACITY = 10000;
+    private static final int DEFAULT_PENDING_CAPACITY = 100000;
+
+    private final AppServiceHub serviceHub;
+    private final CordaX500Name creditAgencyName;
+    private final CordaX500Name bankName;
+    private final KeyedObserverExecutor executor;
+    private final Deque<PendingAction> pending = new ArrayDeque<>();
+    private final int pendingCapacity;
+    private final Set<StateRef> submittedRefs = Collections.synchronizedSet(Collections.newSetFromMap(
+            new LinkedHashMap<StateRef, Boolean>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<StateRef, Boolean> eldest) {
+                    return size() > SUBMITTED_REFS_CAPACITY;
+                }
+            }));
+
+    public LoanAutomationService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        CordappConfig config = serviceHub.getAppContext().getConfig();
+        this.creditAgencyName = CordaX500Name.parse(string(config, "automation.credit-agency",
+                "O=NewShireCreditRatingAgency,L=New York,C=US"));
+        this.bankName = CordaX500Name.parse(string(config, "automation.bank", "O=MTCBank,L=New York,C=US"));
+        this.pendingCapacity = config.exists("automation.pending-capacity")
+                ? config.getInt("automation.pending-capacity") : DEFAULT_PENDING_CAPACITY;
+        if (!config.exists("automation.enabled") || !config.getBoolean("automation.enabled")) {
+            this.executor = null;
+            logger.info("Loan automation is disabled");
+            return;
+        }
+        this.executor = new KeyedObserverExecutor("loan-automation",
+                config.exists("automation.threads") ? config.getInt("automation.threads") : 4,
+                config.exists("automation.queue-capacity") ? config.getInt("automation.queue-capacity") : 1000);
+        serviceHub.register(AppServiceHub.SERVICE_PRIORITY_NORMAL, event -> {
+            if (event == ServiceLifecycleEvent.STATE_MACHINE_STARTED)
+                start();
+        });
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    private static String string(CordappConfig config, String path, String defaultValue) {
+        return config.exists(path) ? config.getString(path) : defaultValue;
+    }
+
+    private void start() {
+        serviceHub.getVaultService().getUpdates().subscribe(update -> update.getProduced().forEach(this::submit),
+                error -> logger.error("Loan automation stopped following the vault updates", error));
+        Thread catchUpThread = new Thread(this::catchUp, "loan-automation-catch-up");
+        catchUpThread.setDaemon(true);
+        catchUpThread.start();
+        logger.info("Loan automation started for " + ourIdentity());
+    }
+
+    /**
+     * Submits the unconsumed states in the statuses an action starts from.
+     */
+    private void catchUp() {
+        try {
+            long submitted = 0;
+            submitted += catchUp(LoanApplicationState.class, StatusFilter.of(
+                    LoaningProcessSchemas.PersistentLoanApplicationState.class, "applicationStatus",
+                    LoanApplicationState::getApplicationStatus, LoanApplicationStatus.APPLIED,
+                    LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS));
+            submitted += catchUp(CreditRatingState.class, StatusFilter.of(
+                    LoaningProcessSchemas.PersistentCreditRatingSchema.class, "creditScoreDesc",
+                    CreditRatingState::getCreditScoreDesc, CreditScoreDesc.UNSPECIFIED));
+            submitted += catchUp(BankFinanceState.class, StatusFilter.of(
+                    LoaningProcessSchemas.PersistentBankProcessingSchema.class, "bankProcessingStatus",
+                    BankFinanceState::getBankProcessingStatus, BankProcessingStatus.IN_PROCESSING));
+            logger.info("Loan automation caught up on " + submitted + " waiting states");
+        } catch (Exception e) {
+            logger.error("Loan automation could not catch up on the waiting states", e);
+        }
+    }
+
+    private long catchUp(Class<? extends ContractState> stateType, StatusFilter<?, ?> statusFilter) {
+        long[] submitted = {0};
+        new RecordedOrderPager(serviceHub.getVaultService(), new QueryCriteria.VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED, Collections.singleton(stateType)), statusFilter.criteria(),
+                CATCH_UP_PAGE_SIZE).forEach(null, null, (stateAndRef, recordedTime) -> {
+            if (submit(stateAndRef))
+                submitted[0]++;
+        });
+        return submitted[0];
+    }
+
+    /**
+     * Queues the action of the state on the executor, or behind the pending actions when there are any or the queue
+     * of its worker is full, so the actions of an application keep their order.
+     */
+    private boolean submit(StateAndRef<ContractState> stateAndRef) {
+        ContractState state = stateAndRef.getState().getData();
+        Runnable action = actionFor(stateAndRef);
+        if (action == null || !submittedRefs.add(stateAndRef.getRef()))
+            return false;
+        PendingAction pendingAction = new PendingAction(keyOf(state), action);
+        synchronized (pending) {
+            if (pending.isEmpty() && executor.tryExecute(pendingAction.key, draining(pendingAction.action)))
+                return true;
+            if (pending.size() >= pendingCapacity) {
+                submittedRefs.remove(stateAndRef.getRef());
+                logger.warn("Loan automation has " + pending.size() + " pending states, state "
+                        + stateAndRef.getRef() + " is left for the next start");
+                return false;
+            }
+            pending.addLast(pendingAction);
+        }
+        return true;
+    }
+
+    /**
+     * Wraps the action to hand the pending actions to the executor once it completed and freed a place in the queue.
+     */
+    private Runnable draining(Runnable action) {
+        return () -> {
+            try {
+                action.run();
+            } finally {
+                drainPending();
+            }
+        };
+    }
+
+    private void drainPending() {
+        synchronized (pending) {
+            while (!pending.isEmpty()) {
+                PendingAction next = pending.peekFirst();
+                if (!executor.tryExecute(next.key, draining(next.action)))
+                    return;
+                pending.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * The action of this node on the state, or null if it has none.
+     */
+    private Runnable actionFor(StateAndRef<ContractState> stateAndRef) {
+        ContractState state = stateAndRef.getState().getData();
+        Party us = ourIdentity();
+        if (state instanceof LoanApplicationState) {
+            LoanApplicationState application = (LoanApplicationState) state;
+            if (!us.equals(application.getFinanceAgencyNode()))
+                return null;
+            UniqueIdentifier loanApplicationId = application.getLoanApplicationId();
+            if (application.getApplicationStatus() == LoanApplicationStatus.APPLIED)
+                return () -> initiateCreditCheck(loanApplicationId);
+            if (application.getApplicationStatus() == LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS)
+                return () -> initiateBankProcessing(loanApplicationId);
+        } else if (state instanceof CreditRatingState) {
+            CreditRatingState creditRating = (CreditRatingState) state;
+            UniqueIdentifier loanVerificationId = creditRating.getLoanVerificationId();
+            CreditScoreDesc scoreDesc = creditRating.getCreditScoreDesc();
+            if (scoreDesc == CreditScoreDesc.UNSPECIFIED && us.equals(creditRating.getCreditAgencyNode()))
+                return () -> run("credit check " + loanVerificationId,
+                        new CreditCheckProcessingFlow(loanVerificationId, creditRating.getLoaningAgency()));
+            if (scoreDesc != CreditScoreDesc.UNSPECIFIED && us.equals(creditRating.getLoaningAgency())
+                    && !updatedWithApplication(stateAndRef))
+                return () -> run("credit rating update " + loanVerificationId,
+                        new LoanApplicationCreationFlow(loanVerificationId, scoreDesc));
+        } else if (state instanceof BankFinanceState) {
+            BankFinanceState bankFinance = (BankFinanceState) state;
+            UniqueIdentifier bankProcessingId = bankFinance.getBankLoanProcessingId();
+            BankProcessingStatus processingStatus = bankFinance.getBankProcessingStatus();
+            if (processingStatus == BankProcessingStatus.IN_PROCESSING && us.equals(bankFinance.getBankNode()))
+                return () -> run("bank processing " + bankProcessingId,
+                        new BankLoanDisbursementFlow(bankProcessingId, bankFinance.getFinanceAgencyNode()));
+            if (processingStatus != BankProcessingStatus.IN_PROCESSING && us.equals(bankFinance.getFinanceAgencyNode())
+                    && !updatedWithApplication(stateAndRef))
+                return () -> run("bank decision update " + bankProcessingId,
+                        new LoanApplicationCreationFlow(bankProcessingId, processingStatus));
+        }
+        return null;
+    }
+
+    /**
+     * Whether the credit agency or the bank updated the loan application in the transaction recording their outcome.
+     */
+    private boolean updatedWithApplication(StateAndRef<ContractState> outcome) {
+        SignedTransaction outcomeTx = serviceHub.getValidatedTransactions()
+                .getTransaction(outcome.getRef().getTxhash());
+        return outcomeTx != null && !outcomeTx.getTx().outputsOfType(LoanApplicationState.class).isEmpty();
+    }
+
+    private static Object keyOf(ContractState state) {
+        if (state instanceof LoanApplicationState)
+            return ((LoanApplicationState) state).getLoanApplicationId().getId();
+        if (state instanceof CreditRatingState)
+            return ((CreditRatingState) state).getLoanVerificationId().getId();
+        return ((BankFinanceState) state).getBankLoanProcessingId().getId();
+    }
+
+    private void initiateCreditCheck(UniqueIdentifier loanApplicationId) {
+        run("credit check initiation " + loanApplicationId,
+                new CreditCheckInitiationFlow(loanApplicationId, party(creditAgencyName)));
+    }
+
+    private void initiateBankProcessing(UniqueIdentifier loanApplicationId) {
+        run("bank processing initiation " + loanApplicationId,
+                new BankLoanProcessingInitiationFlow(loanApplicationId, party(bankName)));
+    }
+
+    /**
+     * Runs the flow and waits for its transaction, or returns null if it failed.
+     */
+    private SignedTransaction run(String step, FlowLogic<SignedTransaction> flow) {
+        long startedAt = System.nanoTime();
+        try (FlowHandle<SignedTransaction> flowHandle = serviceHub.startFlow(flow)) {
+            SignedTransaction tx = flowHandle.getReturnValue().get();
+            logger.info("Loan automation completed the " + step + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms");
+            return tx;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Loan automation failed the " + step + " : " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    private Party party(CordaX500Name name) {
+        Party party = serviceHub.getIdentityService().wellKnownPartyFromX500Name(name);
+        if (party == null)
+            throw new IllegalStateException("No party " + name + " found in the network map");
+        return party;
+    }
+
+    private Party ourIdentity() {
+        return serviceHub.getMyInfo().getLegalIdentities().get(0);
+    }
+
+    private static class PendingAction {
+        private final Object key;
+        private final Runnable action;
+
+        private PendingAction(Object key, Runnable action) {
+            this.key = key;
+            this.action = action;
+        }
+    }
+}
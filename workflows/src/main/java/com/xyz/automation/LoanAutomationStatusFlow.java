@@ -0,0 +1,19 @@
+package com.xyz.automation;
+
+import co.paralleluniverse.fibers.Suspendable;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.StartableByRPC;
+
+/**
+ * Tells whether the {@link LoanAutomationService} of the node is advancing the loan applications, so that a webserver
+ * does not run its observers against the same states.
+ */
+@StartableByRPC
+public class LoanAutomationStatusFlow extends FlowLogic<Boolean> {
+
+    @Suspendable
+    @Override
+    public Boolean call() {
+        return getServiceHub().cordaService(LoanAutomationService.class).isEnabled();
+    }
+}
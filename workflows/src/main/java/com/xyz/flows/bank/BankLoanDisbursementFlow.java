@@ -3,13 +3,17 @@ package com.xyz.flows.bank;
 import co.paralleluniverse.fibers.Suspendable;
 import com.xyz.constants.BankProcessingStatus;
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.contracts.BankFinanceValidationContract;
+import com.xyz.contracts.LoanApplicationContract;
 import com.xyz.flows.ca.CreditCheckProcessingFlow;
 import com.xyz.states.BankFinanceState;
 import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
 import net.corda.core.contracts.Command;
 import net.corda.core.contracts.ContractState;
 import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.flows.*;
 import net.corda.core.identity.Party;
@@ -24,21 +28,37 @@ import org.slf4j.LoggerFactory;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
+/**
+ * Processes a bank loan request. When the bank processing was initiated together with the forwarded loan application,
+ * the application is by default moved to LOAN_DISBURSED or REJECTED_FROM_BANK in the same transaction, signed by the
+ * finance agency, instead of by a later transaction of the finance agency. If the finance agency recorded the
+ * decision on the application first, the notary rejects the application as consumed and the bank finance state is
+ * recorded alone.
+ */
 @InitiatingFlow
 @StartableByRPC
+@StartableByService
 public class BankLoanDisbursementFlow extends FlowLogic<SignedTransaction> {
     private static final Logger LOG = LoggerFactory.getLogger(CreditCheckProcessingFlow.class.getName());
     private Party financeAgency;
     private UniqueIdentifier bankLoanProcessingId;
+    private boolean updateLoanApplication;
     private Random creditScoreRandom = null;
 
     public BankLoanDisbursementFlow(
             UniqueIdentifier creditCheckApplicationId, Party financeAgency) {
+        this(creditCheckApplicationId, financeAgency, true);
+    }
+
+    public BankLoanDisbursementFlow(
+            UniqueIdentifier creditCheckApplicationId, Party financeAgency, boolean updateLoanApplication) {
         this.bankLoanProcessingId = creditCheckApplicationId;
         this.financeAgency = financeAgency;
+        this.updateLoanApplication = updateLoanApplication;
         this.creditScoreRandom = new Random();
     }
 
@@ -71,7 +91,6 @@ public class BankLoanDisbursementFlow extends FlowLogic<SignedTransaction> {
     public SignedTransaction call() throws FlowException {
         LOG.info("Bank Loan Processing initiated with Verification ID : "+ bankLoanProcessingId.toString());
 
-        final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
         Party bankNode = getServiceHub().getMyInfo().getLegalIdentities().get(0);
 
         String companyName = null;
@@ -96,6 +115,7 @@ public class BankLoanDisbursementFlow extends FlowLogic<SignedTransaction> {
             ipBankFinanceState = inputStateList.get(0);
         }
 
+        final Party notary = ipBankFinanceState.getState().getNotary();
         companyName = ipBankFinanceState.getState().getData().getCompanyName();
         loanAmount = ipBankFinanceState.getState().getData().getLoanAmount();
         businesstype = ipBankFinanceState.getState().getData().getBusinessType();
@@ -107,13 +127,53 @@ public class BankLoanDisbursementFlow extends FlowLogic<SignedTransaction> {
 
         BankFinanceState financeState =  new BankFinanceState(financeAgency,bankNode,companyName,businesstype,loanAmount,creditScoreDesc,processingStatus,bankLoanProcessingId);
 
+        StateAndRef<LoanApplicationState> ipLoanApplicationState = updateLoanApplication
+                ? forwardedLoanApplication(ipBankFinanceState) : null;
+        try {
+            return recordProcessing(notary, ipBankFinanceState, financeState, ipLoanApplicationState);
+        } catch (NotaryException e) {
+            if (ipLoanApplicationState == null || !applicationConsumed(e, ipLoanApplicationState, ipBankFinanceState))
+                throw e;
+            // The finance agency recorded the bank decision on the application on its own in the meantime.
+            LOG.info("Loan Application ID : " + ipLoanApplicationState.getState().getData().getLoanApplicationId()
+                    .toString() + " is already consumed, recording the bank processing alone : "
+                    + bankLoanProcessingId.toString());
+            return recordProcessing(notary, ipBankFinanceState, financeState, null);
+        }
+    }
+
+    /**
+     * Records the processed bank finance state, with the forwarded loan application moved to LOAN_DISBURSED or
+     * REJECTED_FROM_BANK in the same transaction when one is given.
+     */
+    @Suspendable
+    private SignedTransaction recordProcessing(Party notary, StateAndRef<BankFinanceState> ipBankFinanceState,
+                                               BankFinanceState financeState,
+                                               StateAndRef<LoanApplicationState> ipLoanApplicationState) throws FlowException {
         final Command<BankFinanceValidationContract.Commands.LoanRequestProcessed> bankProcessingCommand = new Command<>(new BankFinanceValidationContract.Commands.LoanRequestProcessed(),
                 Arrays.asList(financeState.getBankNode().getOwningKey(), financeState.getFinanceAgencyNode().getOwningKey()));
 
+        // The bank finance state stays the first output, callers read the processing status from it.
         final TransactionBuilder txBuilder = new TransactionBuilder(notary).addInputState(ipBankFinanceState)
                 .addOutputState(financeState)
                 .addCommand(bankProcessingCommand);
 
+        if (ipLoanApplicationState != null) {
+            LoanApplicationState laState = ipLoanApplicationState.getState().getData();
+            LoanApplicationStatus applicationStatus = financeState.getBankProcessingStatus() == BankProcessingStatus.PROCESSED
+                    ? LoanApplicationStatus.LOAN_DISBURSED : LoanApplicationStatus.REJECTED_FROM_BANK;
+            LoanApplicationState opLoanApplicationState = new LoanApplicationState(laState.getFinanceAgencyNode(),
+                    laState.getCompanyName(), laState.getBusinessType(), laState.getLoanAmount(), applicationStatus,
+                    laState.getLoanApplicationId(), laState.getLoanVerificationId(), laState.getBankProcessingId());
+
+            txBuilder.addInputState(ipLoanApplicationState)
+                    .addOutputState(opLoanApplicationState)
+                    .addCommand(new LoanApplicationContract.Commands.LoanProcessedFromBank(),
+                            opLoanApplicationState.getFinanceAgencyNode().getOwningKey());
+            LOG.info("Loan Application ID : " + laState.getLoanApplicationId().toString() + " updated with status : "
+                    + applicationStatus + " in the bank processing transaction");
+        }
+
         txBuilder.verify(getServiceHub());
         LOG.info("Bank Loan Processing Application Completed : " + bankLoanProcessingId.toString());
         progressTracker.setCurrentStep(CONTRACT_VERIFICATION);
@@ -130,6 +190,41 @@ public class BankLoanDisbursementFlow extends FlowLogic<SignedTransaction> {
 
         return subFlow(new FinalityFlow(fullySignedTx));
     }
+
+    /**
+     * Whether the notary rejected the transaction only because the forwarded loan application was consumed, which
+     * the bank cannot see beforehand as the application is not in its vault.
+     */
+    private static boolean applicationConsumed(NotaryException e, StateAndRef<LoanApplicationState> ipLoanApplicationState,
+                                               StateAndRef<BankFinanceState> ipBankFinanceState) {
+        if (!(e.getError() instanceof NotaryError.Conflict))
+            return false;
+        Set<StateRef> consumedStates = ((NotaryError.Conflict) e.getError()).getConsumedStates().keySet();
+        return consumedStates.contains(ipLoanApplicationState.getRef())
+                && !consumedStates.contains(ipBankFinanceState.getRef());
+    }
+
+    /**
+     * The loan application forwarded in the transaction that initiated the bank processing, or null if the
+     * application was forwarded on its own and so is not known to the bank. The application may have been consumed by
+     * the finance agency since, which only the notary can tell the bank.
+     */
+    private StateAndRef<LoanApplicationState> forwardedLoanApplication(StateAndRef<BankFinanceState> bankFinanceState) {
+        SignedTransaction initiationTx = getServiceHub().getValidatedTransactions()
+                .getTransaction(bankFinanceState.getRef().getTxhash());
+        if (initiationTx == null)
+            return null;
+        for (StateAndRef<LoanApplicationState> loanApplicationState : initiationTx.getTx()
+                .outRefsOfType(LoanApplicationState.class)) {
+            LoanApplicationState laState = loanApplicationState.getState().getData();
+            if (laState.getApplicationStatus() == LoanApplicationStatus.FORWARDED_TO_BANK
+                    && bankLoanProcessingId.equals(laState.getBankProcessingId()))
+                return loanApplicationState;
+        }
+        LOG.info("Loan application is not part of the bank processing initiation, Bank processing ID : "
+                + bankLoanProcessingId.toString());
+        return null;
+    }
 }
 
 
@@ -155,6 +250,10 @@ class BankLoanProcessingAcceptor extends FlowLogic<SignedTransaction> {
                 requireThat(require -> {
                     ContractState output = stx.getTx().getOutputs().get(0).getData();
                     require.using("This must be a transaction between bank and finance Agency (BankFinanceState transaction).", output instanceof BankFinanceState);
+                    // The contracts tie a loan application updated along the processing to this bank processing.
+                    for (LoanApplicationState laState : stx.getTx().outputsOfType(LoanApplicationState.class))
+                        require.using("Only loan applications of this finance agency can be updated.",
+                                laState.getFinanceAgencyNode().equals(getOurIdentity()));
                     return null;
                 });
             }
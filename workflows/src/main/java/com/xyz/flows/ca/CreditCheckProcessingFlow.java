@@ -2,8 +2,11 @@ package com.xyz.flows.ca;
 
 import co.paralleluniverse.fibers.Suspendable;
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.contracts.CreditRatingCheckContract;
+import com.xyz.contracts.LoanApplicationContract;
 import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
 import net.corda.core.contracts.Command;
 import net.corda.core.contracts.ContractState;
 import net.corda.core.contracts.StateAndRef;
@@ -24,17 +27,30 @@ import java.util.Random;
 
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
+/**
+ * Rates a credit check. When the credit check was initiated together with the forwarded loan application, the
+ * application is by default moved to CREDIT_SCORE_CHECK_PASS or CREDIT_SCORE_CHECK_FAILED in the same transaction,
+ * countersigned by the finance agency, instead of by a later transaction of the finance agency.
+ */
 @InitiatingFlow
 @StartableByRPC
+@StartableByService
 public class CreditCheckProcessingFlow extends FlowLogic<SignedTransaction> {
 	private static final Logger LOG = LoggerFactory.getLogger(CreditCheckProcessingFlow.class.getName());
 	private Party financeAgency;
 	private UniqueIdentifier creditCheckApplicationId;
+	private boolean updateLoanApplication;
 	private Random creditScoreRandom = null;
 
 	public CreditCheckProcessingFlow(UniqueIdentifier creditCheckApplicationId, Party financeAgency) {
+		this(creditCheckApplicationId, financeAgency, true);
+	}
+
+	public CreditCheckProcessingFlow(UniqueIdentifier creditCheckApplicationId, Party financeAgency,
+			boolean updateLoanApplication) {
 		this.creditCheckApplicationId = creditCheckApplicationId;
 		this.financeAgency = financeAgency;
+		this.updateLoanApplication = updateLoanApplication;
 		this.creditScoreRandom = new Random();
 	}
 
@@ -65,9 +81,6 @@ public class CreditCheckProcessingFlow extends FlowLogic<SignedTransaction> {
 	public SignedTransaction call() throws FlowException {
 		LOG.info("CreditCheck processing initiated with Verification ID : " + creditCheckApplicationId.toString());
 
-		final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
-		Party financeNode = getServiceHub().getMyInfo().getLegalIdentities().get(0);
-
 		String companyName = null;
 		Long loanAmount = null;
 		String businesstype = null;
@@ -92,6 +105,8 @@ public class CreditCheckProcessingFlow extends FlowLogic<SignedTransaction> {
 			ipCreditRatingState = inputStateList.get(0);
 		}
 
+		final Party notary = ipCreditRatingState.getState().getNotary();
+		final CreditRatingState ipState = ipCreditRatingState.getState().getData();
 		companyName = ipCreditRatingState.getState().getData().getCompanyName();
 		loanAmount = ipCreditRatingState.getState().getData().getLoanAmount();
 		businesstype = ipCreditRatingState.getState().getData().getBusinessType();
@@ -107,17 +122,35 @@ public class CreditCheckProcessingFlow extends FlowLogic<SignedTransaction> {
 		else
 			creditScoreDesc = CreditScoreDesc.POOR;
 
-		CreditRatingState creditState = new CreditRatingState(financeNode, financeAgency, companyName, businesstype,
-				loanAmount, creditScore, creditScoreDesc, creditCheckApplicationId);
+		CreditRatingState creditState = new CreditRatingState(ipState.getLoaningAgency(), ipState.getCreditAgencyNode(),
+				companyName, businesstype, loanAmount, creditScore, creditScoreDesc, creditCheckApplicationId);
 
 		final Command<CreditRatingCheckContract.Commands.CreditCheckProcessed> creditScoreCheckRequestCommand = new Command<>(
 				new CreditRatingCheckContract.Commands.CreditCheckProcessed(),
 				Arrays.asList(creditState.getCreditAgencyNode().getOwningKey(),
 						creditState.getLoaningAgency().getOwningKey()));
 
+		// The credit rating state stays the first output, callers read the rating from it.
 		final TransactionBuilder txBuilder = new TransactionBuilder(notary).addInputState(ipCreditRatingState)
 				.addOutputState(creditState).addCommand(creditScoreCheckRequestCommand);
 
+		StateAndRef<LoanApplicationState> ipLoanApplicationState = updateLoanApplication
+				? forwardedLoanApplication(ipCreditRatingState) : null;
+		if (ipLoanApplicationState != null) {
+			LoanApplicationState laState = ipLoanApplicationState.getState().getData();
+			LoanApplicationStatus applicationStatus = creditScoreDesc == CreditScoreDesc.POOR
+					? LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED : LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS;
+			LoanApplicationState opLoanApplicationState = new LoanApplicationState(laState.getFinanceAgencyNode(),
+					laState.getCompanyName(), laState.getBusinessType(), laState.getLoanAmount(), applicationStatus,
+					laState.getLoanApplicationId(), laState.getLoanVerificationId(), laState.getBankProcessingId());
+
+			txBuilder.addInputState(ipLoanApplicationState).addOutputState(opLoanApplicationState)
+					.addCommand(new LoanApplicationContract.Commands.LoanProcesedFromCreditCheck(),
+							opLoanApplicationState.getFinanceAgencyNode().getOwningKey());
+			LOG.info("Loan Application ID : " + laState.getLoanApplicationId().toString() + " updated with status : "
+					+ applicationStatus + " in the credit score transaction");
+		}
+
 		txBuilder.verify(getServiceHub());
 		LOG.info("Credit Score request check initiated with Verification ID : " + creditCheckApplicationId.toString());
 		progressTracker.setCurrentStep(CONTRACT_VERIFICATION);
@@ -135,6 +168,27 @@ public class CreditCheckProcessingFlow extends FlowLogic<SignedTransaction> {
 
 		return subFlow(new FinalityFlow(fullySignedTx));
 	}
+
+	/**
+	 * The loan application forwarded in the transaction that initiated the credit check, or null if the application
+	 * was forwarded on its own and so is not known to the credit agency.
+	 */
+	private StateAndRef<LoanApplicationState> forwardedLoanApplication(StateAndRef<CreditRatingState> creditRatingState) {
+		SignedTransaction initiationTx = getServiceHub().getValidatedTransactions()
+				.getTransaction(creditRatingState.getRef().getTxhash());
+		if (initiationTx == null)
+			return null;
+		for (StateAndRef<LoanApplicationState> loanApplicationState : initiationTx.getTx()
+				.outRefsOfType(LoanApplicationState.class)) {
+			LoanApplicationState laState = loanApplicationState.getState().getData();
+			if (laState.getApplicationStatus() == LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY
+					&& creditCheckApplicationId.equals(laState.getLoanVerificationId()))
+				return loanApplicationState;
+		}
+		LOG.info("Loan application is not part of the credit check initiation, Verification ID : "
+				+ creditCheckApplicationId.toString());
+		return null;
+	}
 }
 
 @InitiatedBy(CreditCheckProcessingFlow.class)
@@ -161,6 +215,10 @@ class CreditScoreProcessingAcceptor extends FlowLogic<SignedTransaction> {
 					require.using(
 							"This must be a transaction between bank and finance Agency (LoanRequestState transaction).",
 							output instanceof CreditRatingState);
+					// The contracts tie a loan application updated along the rating to this credit check.
+					for (LoanApplicationState laState : stx.getTx().outputsOfType(LoanApplicationState.class))
+						require.using("Only loan applications of this finance agency can be updated.",
+								laState.getFinanceAgencyNode().equals(getOurIdentity()));
 					return null;
 				});
 			}
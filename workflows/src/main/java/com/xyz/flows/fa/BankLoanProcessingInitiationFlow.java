@@ -3,7 +3,9 @@ package com.xyz.flows.fa;
 import co.paralleluniverse.fibers.Suspendable;
 import com.xyz.constants.BankProcessingStatus;
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.contracts.BankFinanceValidationContract;
+import com.xyz.contracts.LoanApplicationContract;
 import com.xyz.states.BankFinanceState;
 import com.xyz.states.CreditRatingState;
 import com.xyz.states.LoanApplicationState;
@@ -29,8 +31,14 @@ import java.util.List;
 
 import static net.corda.core.contracts.ContractsDSL.requireThat;
 
+/**
+ * Initiates the bank processing of a loan application that passed its credit check and forwards the application to it
+ * in the same transaction, so an application is never left CREDIT_SCORE_CHECK_PASS with a bank processing already
+ * requested.
+ */
 @InitiatingFlow
 @StartableByRPC
+@StartableByService
 public class BankLoanProcessingInitiationFlow extends FlowLogic<SignedTransaction> {
     private static final Logger LOG = LoggerFactory.getLogger(BankLoanProcessingInitiationFlow.class.getName());
     private Party bankNode;
@@ -69,7 +77,6 @@ public class BankLoanProcessingInitiationFlow extends FlowLogic<SignedTransactio
     @Suspendable
     public SignedTransaction call() throws FlowException {
         LOG.info("##### Started Request for CreditCheck flow");
-        final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
         Party financeNode = getServiceHub().getMyInfo().getLegalIdentities().get(0);
 
         String companyName = null;
@@ -96,6 +103,12 @@ public class BankLoanProcessingInitiationFlow extends FlowLogic<SignedTransactio
         }
 
         final LoanApplicationState laState = ipLoanApplicationState.getState().getData();
+        if (laState.getApplicationStatus() != LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS)
+            throw new FlowException("Loan Application ID : " + loanApplicationId.toString()
+                    + " has not passed its credit check : " + laState.getApplicationStatus());
+
+        // The consumed application fixes the notary of the transaction.
+        final Party notary = ipLoanApplicationState.getState().getNotary();
         QueryCriteria creditVerficationIdCustomQuery = null;
         try {
             creditVerficationIdCustomQuery = new QueryCriteria.VaultCustomQueryCriteria(
@@ -124,9 +137,21 @@ public class BankLoanProcessingInitiationFlow extends FlowLogic<SignedTransactio
                 new Command<BankFinanceValidationContract.Commands.BankProcessingInitiated>(new BankFinanceValidationContract.Commands.BankProcessingInitiated(),
                         Arrays.asList(bankFinanceState.getFinanceAgencyNode().getOwningKey(), bankFinanceState.getBankNode().getOwningKey()));
 
+        LoanApplicationState outputLoanApplicationState = new LoanApplicationState(laState.getFinanceAgencyNode(),
+                companyName, businesstype, loanAmount, LoanApplicationStatus.FORWARDED_TO_BANK,
+                laState.getLoanApplicationId(), laState.getLoanVerificationId(), bankProcessingId);
+
+        final Command<LoanApplicationContract.Commands.LoanApplicationForwaredToBank> loanForwardedCommand =
+                new Command<>(new LoanApplicationContract.Commands.LoanApplicationForwaredToBank(),
+                        Arrays.asList(outputLoanApplicationState.getFinanceAgencyNode().getOwningKey()));
+
+        // The bank finance state stays the first output, callers read the bank processing id from it.
         final TransactionBuilder txBuilder = new TransactionBuilder(notary)
+                .addInputState(ipLoanApplicationState)
                 .addOutputState(bankFinanceState)
-                .addCommand(bankProcessingCommand);
+                .addOutputState(outputLoanApplicationState)
+                .addCommand(bankProcessingCommand)
+                .addCommand(loanForwardedCommand);
 
         txBuilder.verify(getServiceHub());
         LOG.info("Bank processing initiated : " + bankProcessingId.toString());
@@ -168,6 +193,8 @@ class BankProcessingInitiationAcceptor extends FlowLogic<SignedTransaction> {
                 requireThat(require -> {
                     ContractState output = stx.getTx().getOutputs().get(0).getData();
                     require.using("This must be a transaction between finance agency and bank.", output instanceof BankFinanceState);
+                    require.using("Only one bank processing can be requested in a transaction.",
+                            stx.getTx().outputsOfType(BankFinanceState.class).size() == 1);
                     return null;
                 });
             }
@@ -9,7 +9,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.contracts.CreditRatingCheckContract;
+import com.xyz.contracts.LoanApplicationContract;
 import com.xyz.states.CreditRatingState;
 import com.xyz.states.LoanApplicationState;
 
@@ -27,6 +29,7 @@ import net.corda.core.flows.InitiatedBy;
 import net.corda.core.flows.InitiatingFlow;
 import net.corda.core.flows.SignTransactionFlow;
 import net.corda.core.flows.StartableByRPC;
+import net.corda.core.flows.StartableByService;
 import net.corda.core.identity.Party;
 import net.corda.core.node.services.Vault;
 import net.corda.core.node.services.vault.QueryCriteria;
@@ -34,8 +37,13 @@ import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.transactions.TransactionBuilder;
 import net.corda.core.utilities.ProgressTracker;
 
+/**
+ * Initiates the credit check of an APPLIED loan application and forwards the application to it in the same
+ * transaction, so an application is never left APPLIED with a credit check already requested.
+ */
 @InitiatingFlow
 @StartableByRPC
+@StartableByService
 public class CreditCheckInitiationFlow extends FlowLogic<SignedTransaction> {
 	private static final Logger LOG = LoggerFactory.getLogger(CreditCheckInitiationFlow.class.getName());
 	private Party creditScoreCheckAgency;
@@ -73,7 +81,6 @@ public class CreditCheckInitiationFlow extends FlowLogic<SignedTransaction> {
 	public SignedTransaction call() throws FlowException {
 		LOG.info("##### Started Request for CreditCheck flow");
 
-		final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
 		Party financeNode = getServiceHub().getMyInfo().getLegalIdentities().get(0);
 
 		String companyName = null;
@@ -102,9 +109,16 @@ public class CreditCheckInitiationFlow extends FlowLogic<SignedTransaction> {
 			ipLoanApplicationState = inputStateList.get(0);
 		}
 
-		companyName = ipLoanApplicationState.getState().getData().getCompanyName();
-		loanAmount = ipLoanApplicationState.getState().getData().getLoanAmount();
-		businesstype = ipLoanApplicationState.getState().getData().getBusinessType();
+		final LoanApplicationState laState = ipLoanApplicationState.getState().getData();
+		if (laState.getApplicationStatus() != LoanApplicationStatus.APPLIED)
+			throw new FlowException("Loan Application ID : " + loanApplicationId.toString()
+					+ " is not in its initial - APPLIED state : " + laState.getApplicationStatus());
+
+		// The consumed application fixes the notary of the transaction.
+		final Party notary = ipLoanApplicationState.getState().getNotary();
+		companyName = laState.getCompanyName();
+		loanAmount = laState.getLoanAmount();
+		businesstype = laState.getBusinessType();
 
 		progressTracker.setCurrentStep(CREDIT_SCORE_REQUESTED);
 
@@ -116,8 +130,18 @@ public class CreditCheckInitiationFlow extends FlowLogic<SignedTransaction> {
 				Arrays.asList(outputCreditRatingCheckState.getLoaningAgency().getOwningKey(),
 						outputCreditRatingCheckState.getCreditAgencyNode().getOwningKey()));
 
-		final TransactionBuilder txBuilder = new TransactionBuilder(notary).addOutputState(outputCreditRatingCheckState)
-				.addCommand(creditScoreCheckRequestCommand);
+		LoanApplicationState outputLoanApplicationState = new LoanApplicationState(laState.getFinanceAgencyNode(),
+				companyName, businesstype, loanAmount, LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY,
+				laState.getLoanApplicationId(), loanVerificationId, laState.getBankProcessingId());
+
+		final Command<LoanApplicationContract.Commands.LoanForwardedToCreditCheck> loanForwardedCommand = new Command<>(
+				new LoanApplicationContract.Commands.LoanForwardedToCreditCheck(),
+				Arrays.asList(outputLoanApplicationState.getFinanceAgencyNode().getOwningKey()));
+
+		// The credit rating state stays the first output, callers read the verification id from it.
+		final TransactionBuilder txBuilder = new TransactionBuilder(notary).addInputState(ipLoanApplicationState)
+				.addOutputState(outputCreditRatingCheckState).addOutputState(outputLoanApplicationState)
+				.addCommand(creditScoreCheckRequestCommand).addCommand(loanForwardedCommand);
 
 		txBuilder.verify(getServiceHub());
 		LOG.info("CreditScore request initiated with Verification ID : " + loanVerificationId.toString());
@@ -162,6 +186,8 @@ class CreditScoreAcceptor extends FlowLogic<SignedTransaction> {
 					require.using(
 							"This must be a transaction between bank and finance Agency (LoanRequestState transaction).",
 							output instanceof CreditRatingState);
+					require.using("Only one credit check can be requested in a transaction.",
+							stx.getTx().outputsOfType(CreditRatingState.class).size() == 1);
 					return null;
 				});
 			}
@@ -0,0 +1,91 @@
+package com.xyz.flows.fa;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.contracts.LoanApplicationContract;
+import com.xyz.states.LoanApplicationState;
+import net.corda.core.contracts.Command;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates a batch of Loan applications in a single transaction, one APPLIED LoanApplicationState output per request
+ * under a single LoanApplied command. The outputs are in the order of the requests.
+ */
+@InitiatingFlow
+@StartableByRPC
+public class LoanApplicationBulkCreationFlow extends FlowLogic<SignedTransaction> {
+    private static final Logger LOG = LoggerFactory.getLogger(LoanApplicationBulkCreationFlow.class.getName());
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private final List<LoanApplicationRequest> applicationRequests;
+
+    public LoanApplicationBulkCreationFlow(List<LoanApplicationRequest> applicationRequests) {
+        this.applicationRequests = applicationRequests;
+    }
+
+    private final ProgressTracker progressTracker = tracker();
+
+    private static final ProgressTracker.Step LOAN_REQUESTED = new ProgressTracker.Step(
+            "Borrowers Requested Loans to Finance Agency");
+    private static final ProgressTracker.Step LOAN_VERIFICATION = new ProgressTracker.Step(
+            "Loan Applications are verified");
+    private static final ProgressTracker.Step SIGNING_TRANSACTION = new ProgressTracker.Step("Signing the transaction");
+    private static final ProgressTracker.Step FINALISING_TRANSACTION = new ProgressTracker.Step(
+            "Recording transaction") {
+        @Override
+        public ProgressTracker childProgressTracker() {
+            return FinalityFlow.tracker();
+        }
+    };
+
+    private static ProgressTracker tracker() {
+        return new ProgressTracker(LOAN_REQUESTED, LOAN_VERIFICATION, SIGNING_TRANSACTION, FINALISING_TRANSACTION);
+    }
+
+    @Override
+    public ProgressTracker getProgressTracker() {
+        return progressTracker;
+    }
+
+    @Override
+    @Suspendable
+    public SignedTransaction call() throws FlowException {
+        if (applicationRequests == null || applicationRequests.isEmpty())
+            throw new IllegalArgumentException("At least one Loan application is required");
+        if (applicationRequests.size() > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " Loan applications can be created in one transaction");
+
+        LOG.info("Started bulk Loan request creation for " + applicationRequests.size() + " applications");
+        final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
+        Party financeParty = getServiceHub().getMyInfo().getLegalIdentities().get(0);
+
+        progressTracker.setCurrentStep(LOAN_REQUESTED);
+        TransactionBuilder txBuilder = new TransactionBuilder(notary).addCommand(new Command<>(
+                new LoanApplicationContract.Commands.LoanApplied(), Arrays.asList(financeParty.getOwningKey())));
+        for (LoanApplicationRequest request : applicationRequests) {
+            txBuilder.addOutputState(new LoanApplicationState(financeParty, request.getCompanyName(),
+                    request.getBusinessType(), request.getLoanAmount(), LoanApplicationStatus.APPLIED,
+                    new UniqueIdentifier(), null, null));
+        }
+
+        progressTracker.setCurrentStep(LOAN_VERIFICATION);
+        txBuilder.verify(getServiceHub());
+
+        progressTracker.setCurrentStep(SIGNING_TRANSACTION);
+        SignedTransaction signedTransaction = getServiceHub().signInitialTransaction(txBuilder);
+
+        progressTracker.setCurrentStep(FINALISING_TRANSACTION);
+        return subFlow(new FinalityFlow(signedTransaction));
+    }
+}
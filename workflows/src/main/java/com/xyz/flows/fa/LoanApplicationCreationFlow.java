@@ -27,6 +27,7 @@ import static net.corda.core.contracts.ContractsDSL.requireThat;
 
 @InitiatingFlow
 @StartableByRPC
+@StartableByService
 public class LoanApplicationCreationFlow extends FlowLogic<SignedTransaction> {
     private static final Logger LOG = LoggerFactory.getLogger(LoanApplicationCreationFlow.class.getName());
 
@@ -0,0 +1,31 @@
+package com.xyz.flows.fa;
+
+import net.corda.core.serialization.CordaSerializable;
+
+/**
+ * A single Loan application of a {@link LoanApplicationBulkCreationFlow} batch.
+ */
+@CordaSerializable
+public class LoanApplicationRequest {
+    private final String companyName;
+    private final String businessType;
+    private final Long loanAmount;
+
+    public LoanApplicationRequest(String companyName, String businessType, Long loanAmount) {
+        this.companyName = companyName;
+        this.businessType = businessType;
+        this.loanAmount = loanAmount;
+    }
+
+    public String getCompanyName() {
+        return companyName;
+    }
+
+    public String getBusinessType() {
+        return businessType;
+    }
+
+    public Long getLoanAmount() {
+        return loanAmount;
+    }
+}
@@ -0,0 +1,161 @@
+package com.xyz.observer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs observer handlers on a fixed number of partitions, each a single worker thread with a bounded queue.
+ *
+ * A handler is queued on the partition of its key, e.g. the loanApplicationId of the state it handles, so the handlers
+ * of one application run one at a time and in order while different applications progress in parallel. Queuing
+ * blocks while the partition queue is full. The worker threads are started with the first handler of their
+ * partition.
+ */
+public class KeyedObserverExecutor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(KeyedObserverExecutor.class);
+
+    private final String name;
+    private final List<Partition> partitions;
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitMicros = new AtomicLong();
+    private final AtomicLong totalHandlingMicros = new AtomicLong();
+    private final AtomicLong maxHandlingMicros = new AtomicLong();
+    private volatile boolean closed = false;
+
+    public KeyedObserverExecutor(String name, int partitionCount, int queueCapacity) {
+        if (partitionCount < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("An observer executor needs at least one partition and queue slot");
+        this.name = name;
+        this.partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++)
+            partitions.add(new Partition(i, queueCapacity));
+    }
+
+    /**
+     * Queues the handler on the partition of the key, waiting for queue space if needed.
+     */
+    public void execute(Object key, Runnable handler) throws InterruptedException {
+        if (closed)
+            throw new IllegalStateException("Observer executor " + name + " is closed");
+        partitionOf(key).put(new KeyedTask(key, handler));
+    }
+
+    /**
+     * Queues the handler on the partition of the key unless its queue is full, for callers that must not wait.
+     */
+    public boolean tryExecute(Object key, Runnable handler) {
+        if (closed)
+            throw new IllegalStateException("Observer executor " + name + " is closed");
+        return partitionOf(key).offer(new KeyedTask(key, handler));
+    }
+
+    private Partition partitionOf(Object key) {
+        return partitions.get(Math.floorMod(key.hashCode(), partitions.size()));
+    }
+
+    public Map<String, Object> getStatistics() {
+        long handledCount = handled.get();
+        int queued = 0;
+        int maxQueued = 0;
+        for (Partition partition : partitions) {
+            queued += partition.queue.size();
+            maxQueued = Math.max(maxQueued, partition.queue.size());
+        }
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("partitions", partitions.size());
+        statistics.put("queued", queued);
+        statistics.put("maxPartitionQueued", maxQueued);
+        statistics.put("handled", handledCount);
+        statistics.put("failed", failed.get());
+        statistics.put("meanWaitMicros", handledCount == 0 ? 0 : totalWaitMicros.get() / handledCount);
+        statistics.put("meanHandlingMicros", handledCount == 0 ? 0 : totalHandlingMicros.get() / handledCount);
+        statistics.put("maxHandlingMicros", maxHandlingMicros.get());
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        partitions.forEach(Partition::close);
+    }
+
+    private void run(KeyedTask task) {
+        long startedAt = System.nanoTime();
+        totalWaitMicros.addAndGet(TimeUnit.NANOSECONDS.toMicros(startedAt - task.queuedAt));
+        try {
+            task.handler.run();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.error("Observer handler failed for key : " + task.key, e);
+        } finally {
+            long handlingMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+            totalHandlingMicros.addAndGet(handlingMicros);
+            maxHandlingMicros.accumulateAndGet(handlingMicros, Math::max);
+            handled.incrementAndGet();
+        }
+    }
+
+    private static class KeyedTask {
+        private final Object key;
+        private final Runnable handler;
+        private final long queuedAt = System.nanoTime();
+
+        private KeyedTask(Object key, Runnable handler) {
+            this.key = key;
+            this.handler = handler;
+        }
+    }
+
+    private class Partition {
+        private final int index;
+        private final BlockingQueue<KeyedTask> queue;
+        private Thread worker;
+
+        private Partition(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        private void put(KeyedTask task) throws InterruptedException {
+            startWorker();
+            queue.put(task);
+        }
+
+        private boolean offer(KeyedTask task) {
+            startWorker();
+            return queue.offer(task);
+        }
+
+        private synchronized void startWorker() {
+            if (worker == null) {
+                worker = new Thread(this::work, name + "-" + index);
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        private void work() {
+            try {
+                while (!closed)
+                    run(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized void close() {
+            if (worker != null)
+                worker.interrupt();
+        }
+    }
+}
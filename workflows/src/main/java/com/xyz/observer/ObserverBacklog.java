@@ -0,0 +1,207 @@
+package com.xyz.observer;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.crypto.SecureHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO of the produced states waiting for the observers.
+ *
+ * Once {@code capacity} states are waiting, the overflow policy applies: {@link OverflowPolicy#BLOCK} holds the vault
+ * feed until the observers catch up, {@link OverflowPolicy#SPILL} appends the references of the following states to a
+ * local file. Spilled states are taken, in order, after the states held in memory; their references are returned
+ * without the state, which the caller loads again from the vault. Once states are spilled, the following ones are
+ * spilled too, or, when the file cannot be written, wait for it to be drained, so no state passes a spilled one.
+ */
+public class ObserverBacklog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ObserverBacklog.class);
+
+    public enum OverflowPolicy {BLOCK, SPILL}
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Path spillFile;
+    private final Deque<Entry> waiting = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition spillDrained = lock.newCondition();
+    private BufferedWriter spillWriter;
+    private BufferedReader spillReader;
+    private long spillPending = 0;
+    private long spilledTotal = 0;
+
+    public ObserverBacklog(int capacity, OverflowPolicy overflowPolicy, Path spillDirectory) throws IOException {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The observer backlog needs a capacity of at least one state");
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = overflowPolicy == OverflowPolicy.SPILL
+                ? Files.createTempFile(Files.createDirectories(spillDirectory), "observer-backlog-", ".spill")
+                : null;
+    }
+
+    public void put(StateAndRef<ContractState> stateAndRef) throws InterruptedException {
+        lock.lock();
+        try {
+            if (overflowPolicy == OverflowPolicy.SPILL && (spillPending > 0 || waiting.size() >= capacity)) {
+                try {
+                    spill(stateAndRef.getRef());
+                    notEmpty.signal();
+                    return;
+                } catch (IOException e) {
+                    logger.error("Observer backlog could not spill to " + spillFile + ", holding the feed", e);
+                }
+                // A state held in memory would be taken before the states already spilled, so the feed waits for
+                // the spill file to be drained first.
+                while (spillPending > 0)
+                    spillDrained.await();
+            }
+            while (waiting.size() >= capacity)
+                notFull.await();
+            waiting.add(new Entry(stateAndRef.getRef(), stateAndRef));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes up to {@code max} states in arrival order, waiting for at least one.
+     */
+    public List<Entry> take(int max) throws InterruptedException {
+        lock.lock();
+        try {
+            while (waiting.isEmpty() && spillPending == 0)
+                notEmpty.await();
+            List<Entry> entries = new ArrayList<>();
+            if (!waiting.isEmpty()) {
+                while (!waiting.isEmpty() && entries.size() < max)
+                    entries.add(waiting.poll());
+                notFull.signalAll();
+            } else {
+                try {
+                    while (spillPending > 0 && entries.size() < max) {
+                        entries.add(new Entry(parse(spillReader.readLine()), null));
+                        spillPending--;
+                    }
+                    if (spillPending == 0) {
+                        resetSpill();
+                        spillDrained.signalAll();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Observer backlog could not read " + spillFile, e);
+                }
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void spill(StateRef stateRef) throws IOException {
+        if (spillWriter == null) {
+            spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+            spillReader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+            logger.warn("Observer backlog full, spilling to " + spillFile);
+        }
+        spillWriter.write(stateRef.getTxhash().toString() + ":" + stateRef.getIndex());
+        spillWriter.newLine();
+        spillWriter.flush();
+        spillPending++;
+        spilledTotal++;
+    }
+
+    private void resetSpill() throws IOException {
+        spillWriter.close();
+        spillReader.close();
+        spillWriter = null;
+        spillReader = null;
+        logger.info("Observer backlog spill drained");
+    }
+
+    private static StateRef parse(String line) {
+        int separator = line.lastIndexOf(':');
+        return new StateRef(SecureHash.parse(line.substring(0, separator)), Integer.parseInt(line.substring(separator + 1)));
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSpillPending() {
+        lock.lock();
+        try {
+            return spillPending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSpilledTotal() {
+        lock.lock();
+        try {
+            return spilledTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (spillWriter != null)
+                resetSpill();
+            if (spillFile != null)
+                Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            logger.warn("Observer backlog could not remove " + spillFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static class Entry {
+        private final StateRef stateRef;
+        private final StateAndRef<ContractState> stateAndRef;
+
+        private Entry(StateRef stateRef, StateAndRef<ContractState> stateAndRef) {
+            this.stateRef = stateRef;
+            this.stateAndRef = stateAndRef;
+        }
+
+        public StateRef getStateRef() {
+            return stateRef;
+        }
+
+        /**
+         * The state, or null for a spilled state.
+         */
+        public StateAndRef<ContractState> getStateAndRef() {
+            return stateAndRef;
+        }
+    }
+}
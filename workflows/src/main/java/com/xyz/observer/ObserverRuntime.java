@@ -0,0 +1,488 @@
+package com.xyz.observer;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Routes the produced states of the shared {@link VaultStateFeed} to the typed handlers of the observers, so all the
+ * observers of a webserver share one vault track.
+ *
+ * States are taken off the RPC client thread into an {@link ObserverBacklog}. A dispatch thread takes them in batches,
+ * loads their recorded time (and spilled states) with one vault query per batch, and queues each state on the
+ * {@link KeyedObserverExecutor} once per handler registered for its type, under the key the handler derives from the
+ * state. The lag of an observer is the time from the recorded time of a state to the end of its handler. The runtime
+ * subscribes to the feed with its first handler.
+ *
+ * A handler is skipped for the states its observer already handled according to the {@link ProcessedStateLog}, and the
+ * states it handles are added to the log. A state is only added once its handler returned: a handler that throws is
+ * retried on the same key after a growing delay, up to {@code handlerAttempts} times, unless the state was consumed in
+ * the meantime. A state still failing after that is left out of the log, so the catch-up of a filtered handler takes
+ * it up again when the webserver starts again. The log also keeps the recorded time of the oldest state still being
+ * handled, from which the feed replays the vault when the webserver starts again.
+ *
+ * A handler registered with a {@link StatusFilter} only receives the states in the statuses it acts on, and states no
+ * handler acts on are dropped before the backlog. It also catches up on the unconsumed states in those statuses: a
+ * catch-up thread pages through them in recorded order, filtered by the vault query, and queues them on the executor
+ * while the updates of the feed, which was subscribed before, are handled as they come. A state found by both is
+ * handled once, as the handlers of a key run in order and skip a state already in the log. The vault track does not
+ * filter its updates on the status, only on the state type, so the updates still carry every state of the types.
+ */
+public class ObserverRuntime implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ObserverRuntime.class);
+    private static final int DISPATCH_BATCH_SIZE = 200;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final int CATCH_UP_PAGE_SIZE = 200;
+    private static final int DEFAULT_HANDLER_ATTEMPTS = 5;
+    private static final long DEFAULT_HANDLER_RETRY_DELAY_MS = 1000;
+    private static final long MAX_HANDLER_RETRY_DELAY_MS = 60000;
+
+    private final VaultStateFeed vaultStateFeed;
+    private final KeyedObserverExecutor observerExecutor;
+    private final CordaRPCOps proxy;
+    private final ObserverBacklog backlog;
+    private final ProcessedStateLog processedStateLog;
+    private final ResumeCursor resumeCursor = new ResumeCursor();
+    private final List<TypedHandler<?>> handlers = new CopyOnWriteArrayList<>();
+    private final Map<String, LagGauge> lagGauges = new ConcurrentHashMap<>();
+    private final Consumer<StateAndRef<ContractState>> listener;
+    private final ExecutorService catchUpExecutor;
+    private final ScheduledExecutorService retryExecutor;
+    private final int handlerAttempts;
+    private final long handlerRetryDelayMillis;
+    private final AtomicLong caughtUp = new AtomicLong();
+    private final AtomicLong filtered = new AtomicLong();
+    private final AtomicLong catchUpsRunning = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private Thread dispatchThread;
+
+    public ObserverRuntime(VaultStateFeed vaultStateFeed, KeyedObserverExecutor observerExecutor, CordaRPCOps proxy,
+                           ObserverBacklog backlog, ProcessedStateLog processedStateLog) {
+        this(vaultStateFeed, observerExecutor, proxy, backlog, processedStateLog, DEFAULT_HANDLER_ATTEMPTS,
+                DEFAULT_HANDLER_RETRY_DELAY_MS);
+    }
+
+    public ObserverRuntime(VaultStateFeed vaultStateFeed, KeyedObserverExecutor observerExecutor, CordaRPCOps proxy,
+                           ObserverBacklog backlog, ProcessedStateLog processedStateLog, int handlerAttempts,
+                           long handlerRetryDelayMillis) {
+        if (handlerAttempts < 1 || handlerRetryDelayMillis < 1)
+            throw new IllegalArgumentException("Observer handlers need a positive number of attempts and retry delay");
+        this.handlerAttempts = handlerAttempts;
+        this.handlerRetryDelayMillis = handlerRetryDelayMillis;
+        this.vaultStateFeed = vaultStateFeed;
+        this.observerExecutor = observerExecutor;
+        this.proxy = proxy;
+        this.backlog = backlog;
+        this.processedStateLog = processedStateLog;
+        this.listener = stateAndRef -> {
+            try {
+                if (isActionable(stateAndRef))
+                    backlog.put(stateAndRef);
+                else
+                    filtered.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        this.catchUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "observer-catch-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "observer-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a handler of the observer for the produced states of the type. Handlers of the same key run one at a
+     * time, in the order of the vault updates.
+     */
+    public <T extends ContractState> void register(String observerName, Class<T> stateType,
+                                                   Function<T, Object> keyOf, Consumer<StateAndRef<T>> handler) {
+        register(observerName, stateType, keyOf, null, handler);
+    }
+
+    /**
+     * Registers a handler as above for the states in the statuses of the filter only, which also handles the
+     * unconsumed states in those statuses, e.g. the applications left waiting for a step while the webserver was down.
+     */
+    public synchronized <T extends ContractState> void register(String observerName, Class<T> stateType,
+                                                               Function<T, Object> keyOf,
+                                                               StatusFilter<T, ?> actionable,
+                                                               Consumer<StateAndRef<T>> handler) {
+        TypedHandler<T> typedHandler = new TypedHandler<>(observerName,
+                lagGauges.computeIfAbsent(observerName, name -> new LagGauge()), stateType, keyOf, actionable,
+                handler);
+        handlers.add(typedHandler);
+        if (dispatchThread == null) {
+            dispatchThread = new Thread(this::dispatch, "observer-dispatch");
+            dispatchThread.setDaemon(true);
+            dispatchThread.start();
+            vaultStateFeed.addListener(listener);
+            if (processedStateLog.getCursor() != null)
+                vaultStateFeed.resumeFrom(processedStateLog.getCursor());
+            vaultStateFeed.start();
+        }
+        if (actionable != null) {
+            catchUpsRunning.incrementAndGet();
+            catchUpExecutor.execute(() -> catchUp(typedHandler, actionable));
+        }
+        logger.info(observerName + " registered for " + stateType.getSimpleName());
+    }
+
+    /**
+     * Queues the actionable unconsumed states of the type of the handler recorded from the resume cursor, retrying
+     * until the vault could be read. States recorded before the cursor were handled already, and their records may
+     * have been compacted out of the processed state log, so they are not read again. The cursor is held where it is
+     * until the catch-up is done, so the log keeps the records of the states it reads.
+     */
+    private <T extends ContractState> void catchUp(TypedHandler<T> handler, StatusFilter<T, ?> actionable) {
+        RecordedOrderPager pager = new RecordedOrderPager(proxy, new QueryCriteria.VaultQueryCriteria(
+                Vault.StateStatus.UNCONSUMED, Collections.singleton(handler.stateType)), actionable.criteria(),
+                CATCH_UP_PAGE_SIZE);
+        Instant from = resumeCursor.hold();
+        long[] queued = {0};
+        try {
+            while (true) {
+                queued[0] = 0;
+                try {
+                    pager.forEach(from, null, (stateAndRef, recordedTime) -> {
+                        try {
+                            if (handler.offer(stateAndRef, recordedTime, false, 1))
+                                queued[0]++;
+                        } catch (InterruptedException e) {
+                            throw new CatchUpInterruptedException(e);
+                        }
+                    });
+                    caughtUp.addAndGet(queued[0]);
+                    logger.info(handler.observerName + " caught up on " + queued[0] + " unconsumed "
+                            + handler.stateType.getSimpleName() + " states with " + actionable + " recorded from "
+                            + from);
+                    return;
+                } catch (CatchUpInterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // States queued before the failure are skipped on the next attempt once handled.
+                    logger.warn(handler.observerName + " could not catch up, retrying in " + RETRY_DELAY_MS
+                            + " ms : " + e.getMessage());
+                    Thread.sleep(RETRY_DELAY_MS);
+                }
+            }
+        } catch (InterruptedException | CatchUpInterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            resumeCursor.release(from);
+            catchUpsRunning.decrementAndGet();
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                List<ObserverBacklog.Entry> entries = backlog.take(DISPATCH_BATCH_SIZE);
+                Map<StateRef, StateAndRef<ContractState>> states = new HashMap<>();
+                Map<StateRef, Instant> recordedTimes = new HashMap<>();
+                resolve(entries, states, recordedTimes);
+                for (ObserverBacklog.Entry entry : entries) {
+                    StateAndRef<ContractState> stateAndRef = entry.getStateAndRef() != null
+                            ? entry.getStateAndRef() : states.get(entry.getStateRef());
+                    if (stateAndRef == null) {
+                        logger.warn("Spilled state " + entry.getStateRef() + " is no longer in the vault, skipping it");
+                        continue;
+                    }
+                    Instant recordedTime = recordedTimes.get(entry.getStateRef());
+                    // Held until every handler is queued, so the cursor does not pass a state not yet queued.
+                    resumeCursor.acquire(recordedTime);
+                    try {
+                        for (TypedHandler<?> handler : handlers)
+                            handler.offer(stateAndRef, recordedTime, true, 1);
+                    } finally {
+                        resumeCursor.release(recordedTime);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the recorded time of the entries, and the state of the spilled ones. The states held in memory are
+     * dispatched without a recorded time when the vault cannot be queried; spilled states wait for the vault.
+     */
+    private void resolve(List<ObserverBacklog.Entry> entries, Map<StateRef, StateAndRef<ContractState>> states,
+                         Map<StateRef, Instant> recordedTimes) throws InterruptedException {
+        List<StateRef> stateRefs = new ArrayList<>();
+        boolean spilled = false;
+        for (ObserverBacklog.Entry entry : entries) {
+            stateRefs.add(entry.getStateRef());
+            spilled |= entry.getStateAndRef() == null;
+        }
+        while (true) {
+            try {
+                Vault.Page<ContractState> page = proxy.vaultQueryBy(
+                        new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.ALL, null, stateRefs),
+                        new PageSpecification(QueryCriteriaUtils.DEFAULT_PAGE_NUM, DISPATCH_BATCH_SIZE),
+                        new Sort(Collections.emptySet()), ContractState.class);
+                page.getStates().forEach(stateAndRef -> states.put(stateAndRef.getRef(), stateAndRef));
+                page.getStatesMetadata().forEach(metadata -> recordedTimes.put(metadata.getRef(), metadata.getRecordedTime()));
+                return;
+            } catch (Exception e) {
+                if (!spilled) {
+                    logger.warn("Recorded times could not be loaded, observer lag is not recorded : " + e.getMessage());
+                    return;
+                }
+                logger.warn("Spilled states could not be loaded, retrying in " + RETRY_DELAY_MS + " ms : " + e.getMessage());
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    /**
+     * Whether the state is known to be consumed. A state is taken as unconsumed when the vault cannot be queried.
+     */
+    private boolean isConsumed(StateRef stateRef) {
+        try {
+            return proxy.vaultQueryBy(new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.CONSUMED, null,
+                            Collections.singletonList(stateRef)),
+                    new PageSpecification(QueryCriteriaUtils.DEFAULT_PAGE_NUM, 1), new Sort(Collections.emptySet()),
+                    ContractState.class).getTotalStatesAvailable() > 0;
+        } catch (Exception e) {
+            logger.warn("Could not check whether state " + stateRef + " is consumed : " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isActionable(StateAndRef<ContractState> stateAndRef) {
+        for (TypedHandler<?> handler : handlers) {
+            if (handler.accepts(stateAndRef.getState().getData()))
+                return true;
+        }
+        return false;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> lag = new TreeMap<>();
+        lagGauges.forEach((name, gauge) -> lag.put(name, gauge.getStatistics()));
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("backlog", backlog.getWaiting());
+        statistics.put("spillPending", backlog.getSpillPending());
+        statistics.put("spilledTotal", backlog.getSpilledTotal());
+        statistics.put("filtered", filtered.get());
+        statistics.put("executor", observerExecutor.getStatistics());
+        statistics.put("lag", lag);
+        statistics.put("catchUpsRunning", catchUpsRunning.get());
+        statistics.put("caughtUp", caughtUp.get());
+        statistics.put("retried", retried.get());
+        statistics.put("abandoned", abandoned.get());
+        statistics.put("processedLog", processedStateLog.getStatistics());
+        return statistics;
+    }
+
+    @Override
+    public synchronized void close() {
+        vaultStateFeed.removeListener(listener);
+        catchUpExecutor.shutdownNow();
+        retryExecutor.shutdownNow();
+        if (dispatchThread != null)
+            dispatchThread.interrupt();
+    }
+
+    /**
+     * Tracks the recorded times of the states being handled. The cursor is the oldest of them or, when none is, the
+     * latest state handled. States without a recorded time, when the vault could not be queried, are not tracked.
+     */
+    private class ResumeCursor {
+        private final TreeMap<Instant, Integer> handling = new TreeMap<>();
+        private Instant latest;
+
+        private synchronized void acquire(Instant recordedTime) {
+            if (recordedTime == null)
+                return;
+            handling.merge(recordedTime, 1, Integer::sum);
+            if (latest == null || recordedTime.isAfter(latest))
+                latest = recordedTime;
+        }
+
+        /**
+         * Holds the cursor where it is, or at the epoch when nothing was handled yet, and returns that time.
+         */
+        private synchronized Instant hold() {
+            Instant cursor = processedStateLog.getCursor() != null ? processedStateLog.getCursor() : Instant.EPOCH;
+            acquire(cursor);
+            return cursor;
+        }
+
+        private synchronized void release(Instant recordedTime) {
+            if (recordedTime == null)
+                return;
+            handling.computeIfPresent(recordedTime, (time, count) -> count == 1 ? null : count - 1);
+            processedStateLog.setCursor(handling.isEmpty() ? latest : handling.firstKey());
+        }
+    }
+
+    private static class CatchUpInterruptedException extends RuntimeException {
+        private CatchUpInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    private static class LagGauge {
+        private final AtomicLong handled = new AtomicLong();
+        private final AtomicLong lastMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+
+        private void record(Instant recordedTime) {
+            long lagMillis = Duration.between(recordedTime, Instant.now()).toMillis();
+            lastMillis.set(lagMillis);
+            maxMillis.accumulateAndGet(lagMillis, Math::max);
+            totalMillis.addAndGet(lagMillis);
+            handled.incrementAndGet();
+        }
+
+        private Map<String, Object> getStatistics() {
+            long handledCount = handled.get();
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("handled", handledCount);
+            statistics.put("lastMillis", lastMillis.get());
+            statistics.put("meanMillis", handledCount == 0 ? 0 : totalMillis.get() / handledCount);
+            statistics.put("maxMillis", maxMillis.get());
+            return statistics;
+        }
+    }
+
+    private class TypedHandler<T extends ContractState> {
+        private final String observerName;
+        private final LagGauge lagGauge;
+        private final Class<T> stateType;
+        private final Function<T, Object> keyOf;
+        private final StatusFilter<T, ?> actionable;
+        private final Consumer<StateAndRef<T>> handler;
+
+        private TypedHandler(String observerName, LagGauge lagGauge, Class<T> stateType, Function<T, Object> keyOf,
+                             StatusFilter<T, ?> actionable, Consumer<StateAndRef<T>> handler) {
+            this.observerName = observerName;
+            this.lagGauge = lagGauge;
+            this.stateType = stateType;
+            this.keyOf = keyOf;
+            this.actionable = actionable;
+            this.handler = handler;
+        }
+
+        private boolean accepts(ContractState state) {
+            return stateType.isInstance(state) && (actionable == null || actionable.test(stateType.cast(state)));
+        }
+
+        /**
+         * Queues the state on the executor if it is of the type of the handler and was not handled yet. The lag is
+         * only recorded for the updates of the feed, not for the states found by the catch-up.
+         */
+        @SuppressWarnings("unchecked")
+        private boolean offer(StateAndRef<ContractState> stateAndRef, Instant recordedTime, boolean update,
+                              int attempt) throws InterruptedException {
+            ContractState state = stateAndRef.getState().getData();
+            if (!accepts(state))
+                return false;
+            if (processedStateLog.contains(observerName, stateAndRef.getRef())) {
+                logger.info(observerName + " already handled state " + stateAndRef.getRef() + ", skipping it");
+                return false;
+            }
+            StateAndRef<T> typedStateAndRef = (StateAndRef<T>) (StateAndRef<?>) stateAndRef;
+            resumeCursor.acquire(recordedTime);
+            try {
+                observerExecutor.execute(keyOf.apply(stateType.cast(state)), () -> {
+                    try {
+                        // Queued by both the catch-up and the feed, the second is skipped here.
+                        if (processedStateLog.contains(observerName, typedStateAndRef.getRef()))
+                            return;
+                        handler.accept(typedStateAndRef);
+                        processedStateLog.markProcessed(observerName, typedStateAndRef.getRef(),
+                                recordedTime != null ? recordedTime : Instant.now());
+                        if (recordedTime != null && update)
+                            lagGauge.record(recordedTime);
+                    } catch (RuntimeException e) {
+                        retry(stateAndRef, recordedTime, update, attempt, e);
+                        throw e;
+                    } finally {
+                        resumeCursor.release(recordedTime);
+                    }
+                });
+            } catch (InterruptedException | RuntimeException e) {
+                resumeCursor.release(recordedTime);
+                throw e;
+            }
+            return true;
+        }
+
+        /**
+         * Queues the failed state again after a delay doubling with each attempt. The cursor is held until then, so
+         * the feed does not resume past a state still being retried. A state given up on holds the cursor for good,
+         * so the catch-up still reads it after a restart.
+         */
+        private void retry(StateAndRef<ContractState> stateAndRef, Instant recordedTime, boolean update, int attempt,
+                           RuntimeException failure) {
+            if (attempt >= handlerAttempts) {
+                abandoned.incrementAndGet();
+                resumeCursor.acquire(recordedTime);
+                logger.error(observerName + " gave up on state " + stateAndRef.getRef() + " after " + attempt
+                        + " attempts, it is left unhandled : " + failure.getMessage());
+                return;
+            }
+            long delay = Math.min(handlerRetryDelayMillis << Math.min(attempt - 1, 20), MAX_HANDLER_RETRY_DELAY_MS);
+            logger.warn(observerName + " failed on state " + stateAndRef.getRef() + ", retrying in " + delay
+                    + " ms : " + failure.getMessage());
+            retried.incrementAndGet();
+            resumeCursor.acquire(recordedTime);
+            try {
+                retryExecutor.schedule(() -> {
+                    try {
+                        if (isConsumed(stateAndRef.getRef())) {
+                            logger.info(observerName + " does not retry state " + stateAndRef.getRef()
+                                    + ", it was consumed in the meantime");
+                            processedStateLog.markProcessed(observerName, stateAndRef.getRef(),
+                                    recordedTime != null ? recordedTime : Instant.now());
+                            return;
+                        }
+                        offer(stateAndRef, recordedTime, update, attempt + 1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        logger.error(observerName + " could not retry state " + stateAndRef.getRef(), e);
+                    } finally {
+                        resumeCursor.release(recordedTime);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                resumeCursor.release(recordedTime);
+            }
+        }
+    }
+}
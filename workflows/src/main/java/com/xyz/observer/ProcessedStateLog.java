@@ -0,0 +1,212 @@
+package com.xyz.observer;
+
+import net.corda.core.contracts.StateRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local append-only log of the states each observer has handled, and of the recorded time the observers resume from
+ * after a restart.
+ *
+ * Lookups are answered from memory. Appended records are written and forced to disk once {@code syncBatchSize}
+ * records are pending or every {@code syncIntervalMillis}, so a crash forgets at most the last batch, whose states are
+ * handled again. The log is rewritten with the records the resume cursor still needs once it holds twice as many
+ * records as that, as neither the feed nor the catch-ups replay states recorded before the cursor.
+ */
+public class ProcessedStateLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedStateLog.class);
+    private static final int MIN_COMPACTION_RECORDS = 10000;
+    private static final String PROCESSED = "P";
+    private static final String CURSOR = "C";
+
+    private final Path file;
+    private final int syncBatchSize;
+    private final Map<String, Instant> processed = new ConcurrentHashMap<>();
+    private final StringBuilder pending = new StringBuilder();
+    private final ScheduledExecutorService syncer;
+    private FileChannel channel;
+    private int pendingRecords = 0;
+    private long records = 0;
+    private long syncs = 0;
+    private long compactions = 0;
+    private volatile Instant cursor;
+    private Instant loggedCursor;
+
+    public ProcessedStateLog(Path file, int syncBatchSize, long syncIntervalMillis) throws IOException {
+        if (syncBatchSize < 1 || syncIntervalMillis < 1)
+            throw new IllegalArgumentException("The processed state log needs a positive sync batch and interval");
+        this.file = file.toAbsolutePath();
+        this.syncBatchSize = syncBatchSize;
+        if (this.file.getParent() != null)
+            Files.createDirectories(this.file.getParent());
+        if (Files.exists(this.file))
+            load();
+        this.loggedCursor = cursor;
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "processed-state-log-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Processed state log " + this.file + " loaded with " + processed.size() + " states"
+                + (cursor == null ? "" : ", resuming from " + cursor));
+    }
+
+    private void load() throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            try {
+                if (fields[0].equals(PROCESSED) && fields.length == 4)
+                    processed.put(key(fields[1], fields[2]), Instant.parse(fields[3]));
+                else if (fields[0].equals(CURSOR) && fields.length == 2)
+                    cursor = Instant.parse(fields[1]);
+                else
+                    logger.warn("Processed state log " + file + " skips the malformed record : " + line);
+            } catch (RuntimeException e) {
+                // The last record may have been cut short by a crash.
+                logger.warn("Processed state log " + file + " skips the malformed record : " + line);
+            }
+        }
+        records = lines.size();
+    }
+
+    /**
+     * Whether the observer has handled the state.
+     */
+    public boolean contains(String observerName, StateRef stateRef) {
+        return processed.containsKey(key(observerName, stateRef.toString()));
+    }
+
+    public synchronized void markProcessed(String observerName, StateRef stateRef, Instant recordedTime) {
+        if (processed.put(key(observerName, stateRef.toString()), recordedTime) != null)
+            return;
+        append(PROCESSED + " " + observerName + " " + stateRef + " " + recordedTime);
+        if (pendingRecords >= syncBatchSize)
+            syncQuietly();
+    }
+
+    /**
+     * The recorded time from which the vault is replayed after a restart, or null when nothing was handled yet.
+     */
+    public Instant getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Instant cursor) {
+        this.cursor = cursor;
+    }
+
+    private void append(String record) {
+        pending.append(record).append('\n');
+        pendingRecords++;
+        records++;
+    }
+
+    public synchronized void sync() throws IOException {
+        Instant current = cursor;
+        if (current != null && !current.equals(loggedCursor)) {
+            append(CURSOR + " " + current);
+            loggedCursor = current;
+        }
+        if (pendingRecords == 0)
+            return;
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        channel.force(false);
+        pending.setLength(0);
+        pendingRecords = 0;
+        syncs++;
+        if (records > Math.max(MIN_COMPACTION_RECORDS, 2L * (processed.size() + 1)))
+            compact();
+    }
+
+    private synchronized void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            logger.error("Processed state log " + file + " could not be written", e);
+        }
+    }
+
+    /**
+     * Rewrites the log with the cursor and the states recorded from it, replacing the log once the copy is on disk.
+     */
+    private void compact() throws IOException {
+        Instant compactedCursor = loggedCursor;
+        if (compactedCursor != null)
+            processed.values().removeIf(recordedTime -> recordedTime.isBefore(compactedCursor));
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        long compactedRecords = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            if (compactedCursor != null) {
+                writer.write(CURSOR + " " + compactedCursor);
+                writer.newLine();
+                compactedRecords++;
+            }
+            for (Map.Entry<String, Instant> entry : processed.entrySet()) {
+                writer.write(PROCESSED + " " + entry.getKey() + " " + entry.getValue());
+                writer.newLine();
+                compactedRecords++;
+            }
+        }
+        try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            compactedChannel.force(true);
+        }
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logger.info("Processed state log " + file + " compacted from " + records + " to " + compactedRecords
+                + " records");
+        records = compactedRecords;
+        compactions++;
+    }
+
+    private static String key(String observerName, String stateRef) {
+        return observerName + " " + stateRef;
+    }
+
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("file", file.toString());
+        statistics.put("states", processed.size());
+        statistics.put("records", records);
+        statistics.put("pending", pendingRecords);
+        statistics.put("syncs", syncs);
+        statistics.put("compactions", compactions);
+        statistics.put("cursor", cursor == null ? null : cursor.toString());
+        return statistics;
+    }
+
+    @Override
+    public synchronized void close() {
+        syncer.shutdownNow();
+        syncQuietly();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Processed state log " + file + " could not be closed", e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.xyz.observer;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.VaultService;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.ColumnPredicate;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.schemas.StatePersistable;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Pages through the states matching a criteria in recorded order, then in transaction ID and output index order.
+ *
+ * Each page starts at the recorded time of the last state of the previous page rather than at an offset, so states
+ * consumed while the pages are read, typically by the observers handling the previous pages, do not shift the
+ * following pages and no state is skipped. States up to the last one passed are not passed again.
+ *
+ * States recorded at the same time, e.g. the outputs of one bulk transaction, can fill more than a page. That group is
+ * read from a query over every state recorded at that time, consumed or not, which keeps the same pages while the
+ * observers consume its states, and only the states of the status asked for are passed.
+ */
+public class RecordedOrderPager {
+    private final PageQuery pageQuery;
+    private final QueryCriteria.VaultQueryCriteria criteria;
+    private final QueryCriteria filter;
+    private final QueryCriteria groupFilter;
+    private final int pageSize;
+
+    public RecordedOrderPager(CordaRPCOps proxy, QueryCriteria.VaultQueryCriteria criteria, int pageSize) {
+        this(proxy, criteria, null, pageSize);
+    }
+
+    /**
+     * Pages through the states matching both the criteria and the filter, e.g. a {@link StatusFilter} criteria.
+     */
+    public RecordedOrderPager(CordaRPCOps proxy, QueryCriteria.VaultQueryCriteria criteria, QueryCriteria filter,
+                              int pageSize) {
+        this((pageCriteria, paging, sort) -> proxy.vaultQueryBy(pageCriteria, paging, sort, ContractState.class),
+                criteria, filter, pageSize);
+    }
+
+    /**
+     * Pages through the vault of the node itself, for a CorDapp service.
+     */
+    public RecordedOrderPager(VaultService vaultService, QueryCriteria.VaultQueryCriteria criteria,
+                              QueryCriteria filter, int pageSize) {
+        this((pageCriteria, paging, sort) -> vaultService.queryBy(ContractState.class, pageCriteria, paging, sort),
+                criteria, filter, pageSize);
+    }
+
+    RecordedOrderPager(PageQuery pageQuery, QueryCriteria.VaultQueryCriteria criteria, QueryCriteria filter,
+                       int pageSize) {
+        this.pageQuery = pageQuery;
+        this.criteria = criteria;
+        this.filter = filter;
+        this.groupFilter = filter == null ? null : allStatuses(filter);
+        this.pageSize = pageSize;
+    }
+
+    static Sort recordedOrder() {
+        return new Sort(Arrays.asList(
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME),
+                        Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID),
+                        Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX),
+                        Sort.Direction.ASC)));
+    }
+
+    static QueryCriteria.VaultQueryCriteria recordedFrom(QueryCriteria.VaultQueryCriteria criteria, Instant from) {
+        return from == null ? criteria : recorded(criteria, Builder.greaterThanOrEqual(from));
+    }
+
+    private static QueryCriteria.VaultQueryCriteria recorded(QueryCriteria.VaultQueryCriteria criteria,
+                                                             ColumnPredicate<Instant> predicate) {
+        return criteria.withTimeCondition(new QueryCriteria.TimeCondition(QueryCriteria.TimeInstantType.RECORDED,
+                predicate));
+    }
+
+    /**
+     * The vault applies a single state status to the whole query, so the filter of a group query shall ask for
+     * every status too.
+     */
+    private static QueryCriteria allStatuses(QueryCriteria filter) {
+        if (filter instanceof QueryCriteria.VaultQueryCriteria)
+            return ((QueryCriteria.VaultQueryCriteria) filter).withStatus(Vault.StateStatus.ALL);
+        if (filter instanceof QueryCriteria.VaultCustomQueryCriteria)
+            return allStatuses((QueryCriteria.VaultCustomQueryCriteria<?>) filter);
+        throw new IllegalArgumentException("Unsupported filter criteria : " + filter.getClass().getSimpleName());
+    }
+
+    private static <L extends StatePersistable> QueryCriteria allStatuses(
+            QueryCriteria.VaultCustomQueryCriteria<L> filter) {
+        return new QueryCriteria.VaultCustomQueryCriteria<>(filter.getExpression(), Vault.StateStatus.ALL,
+                filter.getContractStateTypes(), filter.getRelevancyStatus());
+    }
+
+    Vault.Page<ContractState> query(Instant from, int pageNumber) {
+        return query(recordedFrom(criteria, from), filter, pageNumber);
+    }
+
+    private Vault.Page<ContractState> query(QueryCriteria pageCriteria, QueryCriteria pageFilter, int pageNumber) {
+        if (pageFilter != null)
+            pageCriteria = pageCriteria.and(pageFilter);
+        return pageQuery.query(pageCriteria, new PageSpecification(pageNumber, pageSize), recordedOrder());
+    }
+
+    /**
+     * Passes each state recorded from the given time, or every state when null, with its recorded time, and returns
+     * the number of states passed. The first page may be given, e.g. the snapshot of a vault track.
+     */
+    public long forEach(Instant from, Vault.Page<ContractState> firstPage,
+                 BiConsumer<StateAndRef<ContractState>, Instant> consumer) {
+        Vault.Page<ContractState> page = firstPage != null ? firstPage
+                : query(from, QueryCriteriaUtils.DEFAULT_PAGE_NUM);
+        RecordedKey last = null;
+        long passed = 0;
+        while (true) {
+            List<StateAndRef<ContractState>> states = page.getStates();
+            RecordedKey first = null;
+            for (int i = 0; i < states.size(); i++) {
+                StateAndRef<ContractState> stateAndRef = states.get(i);
+                RecordedKey key = new RecordedKey(page.getStatesMetadata().get(i).getRecordedTime(),
+                        stateAndRef.getRef());
+                if (first == null)
+                    first = key;
+                if (last == null || key.compareTo(last) > 0) {
+                    consumer.accept(stateAndRef, key.recordedTime);
+                    passed++;
+                    last = key;
+                }
+            }
+            if (states.size() < pageSize || last == null)
+                return passed;
+            if (first.recordedTime.equals(last.recordedTime)) {
+                // A whole page recorded at the same time, the rest of that group is read on its own.
+                passed += forEachRecordedAt(last, consumer);
+                page = query(recorded(criteria, Builder.greaterThan(last.recordedTime)), filter,
+                        QueryCriteriaUtils.DEFAULT_PAGE_NUM);
+            } else {
+                page = query(last.recordedTime, QueryCriteriaUtils.DEFAULT_PAGE_NUM);
+            }
+        }
+    }
+
+    /**
+     * Passes the states recorded at the time of the given key and after it. The group query asks for every status,
+     * so states consumed while the group is read do not shift its pages, and skips those not of the status asked for.
+     */
+    private long forEachRecordedAt(RecordedKey after, BiConsumer<StateAndRef<ContractState>, Instant> consumer) {
+        QueryCriteria groupCriteria = recorded(criteria.withStatus(Vault.StateStatus.ALL),
+                Builder.equal(after.recordedTime));
+        long passed = 0;
+        int pageNumber = QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+        while (true) {
+            Vault.Page<ContractState> page = query(groupCriteria, groupFilter, pageNumber);
+            List<StateAndRef<ContractState>> states = page.getStates();
+            for (int i = 0; i < states.size(); i++) {
+                StateAndRef<ContractState> stateAndRef = states.get(i);
+                Vault.StateMetadata metadata = page.getStatesMetadata().get(i);
+                if (new RecordedKey(metadata.getRecordedTime(), stateAndRef.getRef()).compareTo(after) <= 0)
+                    continue;
+                if (criteria.getStatus() == Vault.StateStatus.ALL || criteria.getStatus() == metadata.getStatus()) {
+                    consumer.accept(stateAndRef, metadata.getRecordedTime());
+                    passed++;
+                }
+            }
+            if (states.size() < pageSize)
+                return passed;
+            pageNumber++;
+        }
+    }
+
+    interface PageQuery {
+        Vault.Page<ContractState> query(QueryCriteria criteria, PageSpecification paging, Sort sort);
+    }
+
+    /**
+     * The position of a state in the recorded order the pages are sorted by.
+     */
+    private static final class RecordedKey implements Comparable<RecordedKey> {
+        private final Instant recordedTime;
+        private final StateRef ref;
+
+        private RecordedKey(Instant recordedTime, StateRef ref) {
+            this.recordedTime = recordedTime;
+            this.ref = ref;
+        }
+
+        @Override
+        public int compareTo(RecordedKey other) {
+            int order = recordedTime.compareTo(other.recordedTime);
+            if (order == 0)
+                order = ref.getTxhash().toString().compareTo(other.ref.getTxhash().toString());
+            return order != 0 ? order : Integer.compare(ref.getIndex(), other.ref.getIndex());
+        }
+    }
+}
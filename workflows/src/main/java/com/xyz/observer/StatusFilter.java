@@ -0,0 +1,67 @@
+package com.xyz.observer;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.schemas.StatePersistable;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * The statuses of a state an observer acts on, both as a vault query on the status column of the state schema and as
+ * a test of a state received from the feed. Statuses are persisted as their enum names in the
+ * {@code LoaningProcessSchemas} tables.
+ */
+public final class StatusFilter<T extends ContractState, E extends Enum<E>> implements Predicate<T> {
+    private final Class<? extends StatePersistable> entityClass;
+    private final String column;
+    private final Function<T, E> statusOf;
+    private final Set<E> statuses;
+
+    private StatusFilter(Class<? extends StatePersistable> entityClass, String column, Function<T, E> statusOf,
+                         Set<E> statuses) {
+        this.entityClass = entityClass;
+        this.column = column;
+        this.statusOf = statusOf;
+        this.statuses = statuses;
+    }
+
+    @SafeVarargs
+    public static <T extends ContractState, E extends Enum<E>> StatusFilter<T, E> of(
+            Class<? extends StatePersistable> entityClass, String column, Function<T, E> statusOf, E status,
+            E... statuses) {
+        try {
+            QueryCriteriaUtils.getField(column, entityClass);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("Unknown status column : " + column, e);
+        }
+        return new StatusFilter<>(entityClass, column, statusOf, EnumSet.of(status, statuses));
+    }
+
+    @Override
+    public boolean test(T state) {
+        return statuses.contains(statusOf.apply(state));
+    }
+
+    public QueryCriteria criteria() {
+        List<String> statusNames = statuses.stream().map(Enum::name).collect(Collectors.toList());
+        try {
+            return new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.in(QueryCriteriaUtils.getField(column, entityClass), statusNames));
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unknown status column : " + column, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return column + " in " + Arrays.toString(statuses.toArray());
+    }
+}
@@ -0,0 +1,266 @@
+package com.xyz.observer;
+
+import com.xyz.states.BankFinanceState;
+import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteriaUtils;
+import net.corda.core.node.services.vault.Sort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A supervised vault track over a set of state types, by default the LoanApplicationState, CreditRatingState and
+ * BankFinanceState types shared by every listener of the webserver.
+ *
+ * Listeners are called with each produced state, in the order of the vault updates, on the RPC client thread. They
+ * shall hand off any slow work; the observers are attached through an {@link ObserverRuntime}.
+ *
+ * When the update stream fails, typically because the node restarted, the feed resubscribes with a growing delay.
+ * The resubscription replays the unconsumed states recorded since the last state delivered, in recorded order, before
+ * the new updates; states already delivered are skipped. States produced and consumed again while the feed was down
+ * are not replayed, their successors are. {@link #resumeFrom(Instant)} replays the same way from an earlier time.
+ */
+public class VaultStateFeed implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VaultStateFeed.class);
+    private static final int CATCH_UP_PAGE_SIZE = 200;
+    private static final int DELIVERED_REFS_CAPACITY = 10000;
+    private static final long MIN_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
+    private final CordaRPCOps proxy;
+    private final Set<Class<? extends ContractState>> stateTypes;
+    private final List<Consumer<StateAndRef<ContractState>>> listeners = new CopyOnWriteArrayList<>();
+    private final Object dispatchLock = new Object();
+    private final Set<StateRef> deliveredRefs = Collections.newSetFromMap(
+            new LinkedHashMap<StateRef, Boolean>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<StateRef, Boolean> eldest) {
+                    return size() > DELIVERED_REFS_CAPACITY;
+                }
+            });
+    private final ScheduledExecutorService supervisor;
+
+    private Subscription subscription;
+    private StateRef lastDelivered;
+    private Instant subscribedAt;
+    private Instant resumeFrom;
+    private long retryDelayMillis = MIN_RETRY_DELAY_MS;
+    private boolean closed = false;
+    private volatile boolean live = false;
+    private volatile long generation = 0;
+
+    public VaultStateFeed(CordaRPCOps proxy) {
+        this(proxy, LoanApplicationState.class, CreditRatingState.class, BankFinanceState.class);
+    }
+
+    @SafeVarargs
+    public VaultStateFeed(CordaRPCOps proxy, Class<? extends ContractState>... stateTypes) {
+        this.proxy = proxy;
+        this.stateTypes = new HashSet<>(Arrays.asList(stateTypes));
+        this.supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vault-state-feed-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void addListener(Consumer<StateAndRef<ContractState>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<StateAndRef<ContractState>> listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void start() {
+        if (subscription != null || closed)
+            return;
+        try {
+            subscribe();
+        } catch (Exception e) {
+            logger.error("Vault state feed could not be started, retrying in " + retryDelayMillis + " ms", e);
+            scheduleResubscribe();
+        }
+    }
+
+    /**
+     * Replays the unconsumed states recorded since the given time, e.g. the time a previous run of the webserver
+     * stopped at, before the following updates. A started feed resubscribes to do so in the background.
+     */
+    public synchronized void resumeFrom(Instant cursor) {
+        if (closed)
+            return;
+        resumeFrom = cursor;
+        if (subscription == null)
+            return;
+        subscription.unsubscribe();
+        subscription = null;
+        live = false;
+        supervisor.execute(this::resubscribe);
+    }
+
+    /**
+     * Whether the feed is subscribed and has not failed, i.e. whether listeners are seeing every vault update.
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Incremented on each resubscription, listeners may have missed consumed states across generations.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Called holding the monitor of the feed, as are the error and retry handlers.
+     */
+    private void subscribe() {
+        QueryCriteria.VaultQueryCriteria criteria = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED,
+                stateTypes);
+        Instant cursor = resumeCursor();
+        synchronized (dispatchLock) {
+            DataFeed<Vault.Page<ContractState>, Vault.Update<ContractState>> dataFeed;
+            Instant trackedAt = proxy.currentNodeTime();
+            if (cursor == null) {
+                // Nothing to resume from, only the updates are of interest and the snapshot is limited to a single state.
+                dataFeed = proxy.vaultTrackBy(criteria, new PageSpecification(QueryCriteriaUtils.DEFAULT_PAGE_NUM, 1),
+                        new Sort(Collections.emptySet()), ContractState.class);
+            } else {
+                dataFeed = proxy.vaultTrackBy(RecordedOrderPager.recordedFrom(criteria, cursor),
+                        new PageSpecification(QueryCriteriaUtils.DEFAULT_PAGE_NUM, CATCH_UP_PAGE_SIZE),
+                        RecordedOrderPager.recordedOrder(), ContractState.class);
+            }
+            // Updates are held on the dispatch lock until the catch-up below has been delivered.
+            subscription = dataFeed.getUpdates().subscribe(this::dispatch, this::onError);
+            try {
+                if (cursor != null)
+                    catchUp(criteria, cursor, dataFeed.getSnapshot());
+            } catch (RuntimeException e) {
+                subscription.unsubscribe();
+                subscription = null;
+                throw e;
+            }
+            subscribedAt = trackedAt;
+            resumeFrom = null;
+        }
+        retryDelayMillis = MIN_RETRY_DELAY_MS;
+        generation++;
+        live = true;
+        logger.info("Vault state feed " + (cursor == null ? "started" : "resumed from " + cursor) + " for "
+                + stateTypes.size() + " state types");
+    }
+
+    /**
+     * The recorded time of the last state delivered, or the time of the previous subscription when no state was
+     * delivered since, or the time asked to resume from if earlier.
+     */
+    private Instant resumeCursor() {
+        Instant cursor = lastDeliveredCursor();
+        if (resumeFrom != null && (cursor == null || resumeFrom.isBefore(cursor)))
+            return resumeFrom;
+        return cursor;
+    }
+
+    private Instant lastDeliveredCursor() {
+        StateRef lastDeliveredRef;
+        synchronized (dispatchLock) {
+            lastDeliveredRef = lastDelivered;
+            if (lastDeliveredRef == null)
+                return subscribedAt;
+        }
+        Vault.Page<ContractState> page = proxy.vaultQueryByCriteria(new QueryCriteria.VaultQueryCriteria(
+                Vault.StateStatus.ALL, null, Collections.singletonList(lastDeliveredRef)), ContractState.class);
+        if (page.getStatesMetadata().isEmpty())
+            return subscribedAt;
+        return page.getStatesMetadata().get(0).getRecordedTime();
+    }
+
+    private void catchUp(QueryCriteria.VaultQueryCriteria criteria, Instant cursor,
+                         Vault.Page<ContractState> snapshotPage) {
+        long[] replayed = {0};
+        new RecordedOrderPager(proxy, criteria, CATCH_UP_PAGE_SIZE).forEach(cursor, snapshotPage,
+                (stateAndRef, recordedTime) -> {
+                    if (deliver(stateAndRef))
+                        replayed[0]++;
+                });
+        logger.info("Vault state feed replayed " + replayed[0] + " states recorded since its cursor");
+    }
+
+    private void dispatch(Vault.Update<ContractState> update) {
+        synchronized (dispatchLock) {
+            for (StateAndRef<ContractState> produced : update.getProduced())
+                deliver(produced);
+        }
+    }
+
+    private boolean deliver(StateAndRef<ContractState> produced) {
+        if (!deliveredRefs.add(produced.getRef()))
+            return false;
+        lastDelivered = produced.getRef();
+        for (Consumer<StateAndRef<ContractState>> listener : listeners) {
+            try {
+                listener.accept(produced);
+            } catch (Exception e) {
+                logger.error("Vault state feed listener failed for state : " + produced.getRef(), e);
+            }
+        }
+        return true;
+    }
+
+    private synchronized void onError(Throwable error) {
+        live = false;
+        subscription = null;
+        if (closed)
+            return;
+        logger.error("Vault state feed failed, resubscribing in " + retryDelayMillis + " ms", error);
+        scheduleResubscribe();
+    }
+
+    private synchronized void scheduleResubscribe() {
+        long delay = retryDelayMillis;
+        retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_DELAY_MS);
+        supervisor.schedule(this::resubscribe, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void resubscribe() {
+        if (subscription != null || closed)
+            return;
+        try {
+            subscribe();
+        } catch (Exception e) {
+            logger.warn("Vault state feed could not resubscribe, retrying in " + retryDelayMillis + " ms : "
+                    + e.getMessage());
+            scheduleResubscribe();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        live = false;
+        supervisor.shutdownNow();
+        if (subscription != null) {
+            subscription.unsubscribe();
+            subscription = null;
+        }
+    }
+}
@@ -1,15 +1,15 @@
 package com.xyz.observer.fa;
 
 import com.xyz.constants.BankProcessingStatus;
+import com.xyz.observer.ObserverRuntime;
+import com.xyz.observer.StatusFilter;
 import com.xyz.processor.fa.FAPostBankStatusUpdateProcessor;
 import com.xyz.states.BankFinanceState;
+import com.xyz.states.schema.LoaningProcessSchemas;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.messaging.CordaRPCOps;
-import net.corda.core.messaging.DataFeed;
-import net.corda.core.node.services.Vault;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rx.Observable;
 
 public class FABankFinanceStateObserver {
 
@@ -21,31 +21,24 @@ public class FABankFinanceStateObserver {
         this.proxy = proxy;
     }
 
-    public void observeBankFinanceState() {
-        try {
-            final DataFeed<Vault.Page<BankFinanceState>, Vault.Update<BankFinanceState>> bankStateFeed = proxy
-                    .vaultTrack(BankFinanceState.class);
-            final Observable<Vault.Update<BankFinanceState>> creditUpdates = bankStateFeed.getUpdates();
-
-            creditUpdates.toBlocking().subscribe(update -> update.getProduced().forEach(t -> {
-                BankFinanceState bankFinanceState = t.getState().getData();
-
-                logger.info("Update in BankFinanceState detected for Bank Processing Id : "
-                        + bankFinanceState.getBankLoanProcessingId() + " with processing status : "
-                        + bankFinanceState.getBankProcessingStatus().toString());
-                final UniqueIdentifier bankLoanApplicationId = bankFinanceState.getBankLoanProcessingId();
-
-                if (bankFinanceState.getBankProcessingStatus() != BankProcessingStatus.IN_PROCESSING) {
-                    new FAPostBankStatusUpdateProcessor(bankLoanApplicationId, null, proxy,
-                            bankFinanceState.getBankProcessingStatus()).processBankFinanceProcessingUpdate();
-                }
-
-            }));
-
-        } catch (Exception e) {
-            logger.error("Exception occurred", e.getMessage());
-            e.printStackTrace();
-        }
+    public void observeBankFinanceState(ObserverRuntime observerRuntime) {
+        observerRuntime.register(getClass().getSimpleName(), BankFinanceState.class,
+                state -> state.getBankLoanProcessingId().getId(),
+                StatusFilter.of(LoaningProcessSchemas.PersistentBankProcessingSchema.class, "bankProcessingStatus",
+                        BankFinanceState::getBankProcessingStatus, BankProcessingStatus.PROCESSED,
+                        BankProcessingStatus.REJECTED), t -> {
+            BankFinanceState bankFinanceState = t.getState().getData();
+
+            logger.info("Update in BankFinanceState detected for Bank Processing Id : "
+                    + bankFinanceState.getBankLoanProcessingId() + " with processing status : "
+                    + bankFinanceState.getBankProcessingStatus().toString());
+            final UniqueIdentifier bankLoanApplicationId = bankFinanceState.getBankLoanProcessingId();
+
+            if (bankFinanceState.getBankProcessingStatus() != BankProcessingStatus.IN_PROCESSING) {
+                new FAPostBankStatusUpdateProcessor(bankLoanApplicationId, null, proxy,
+                        bankFinanceState.getBankProcessingStatus()).processBankFinanceProcessingUpdate();
+            }
+        });
     }
 
 }
@@ -1,15 +1,15 @@
 package com.xyz.observer.fa;
 
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.observer.ObserverRuntime;
+import com.xyz.observer.StatusFilter;
 import com.xyz.processor.fa.FAPostCreditCheckProcessor;
 import com.xyz.states.CreditRatingState;
+import com.xyz.states.schema.LoaningProcessSchemas;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.messaging.CordaRPCOps;
-import net.corda.core.messaging.DataFeed;
-import net.corda.core.node.services.Vault;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import rx.Observable;
 
 public class FACreditScoreCheckStateObserver {
 
@@ -21,35 +21,28 @@ public class FACreditScoreCheckStateObserver {
         this.proxy = proxy;
     }
 
-    public void observeCreditAgencyResponse() {
-        try {
-            final DataFeed<Vault.Page<CreditRatingState>, Vault.Update<CreditRatingState>> creditStateDataFeed = proxy
-                    .vaultTrack(CreditRatingState.class);
-            final Observable<Vault.Update<CreditRatingState>> creditUpdates = creditStateDataFeed.getUpdates();
-
-            creditUpdates.toBlocking().subscribe(update -> update.getProduced().forEach(t -> {
-                CreditRatingState creditApplicationState = t.getState().getData();
-
-                logger.info("Update in CreditRatingState detected for CreditCheck verification Id : "
-                        + creditApplicationState.getLoanVerificationId() + " with CreditScoreDesc "
+    public void observeCreditAgencyResponse(ObserverRuntime observerRuntime) {
+        observerRuntime.register(getClass().getSimpleName(), CreditRatingState.class,
+                state -> state.getLoanVerificationId().getId(),
+                StatusFilter.of(LoaningProcessSchemas.PersistentCreditRatingSchema.class, "creditScoreDesc",
+                        CreditRatingState::getCreditScoreDesc, CreditScoreDesc.GOOD, CreditScoreDesc.FAIR,
+                        CreditScoreDesc.POOR), t -> {
+            CreditRatingState creditApplicationState = t.getState().getData();
+
+            logger.info("Update in CreditRatingState detected for CreditCheck verification Id : "
+                    + creditApplicationState.getLoanVerificationId() + " with CreditScoreDesc "
+                    + creditApplicationState.getCreditScoreDesc().toString());
+            final UniqueIdentifier creditApplicationId = creditApplicationState.getLoanVerificationId();
+
+            if (creditApplicationState.getCreditScoreDesc() != CreditScoreDesc.UNSPECIFIED) {
+                logger.info("CreditScore check has been completed from Credit Check agency, for verification ID : "
+                        + creditApplicationId.toString() + " with CreditScore rating : "
+                        + creditApplicationState.getCreditScoreCheckRating() + " and credit score desc : "
                         + creditApplicationState.getCreditScoreDesc().toString());
-                final UniqueIdentifier creditApplicationId = creditApplicationState.getLoanVerificationId();
-
-                if (creditApplicationState.getCreditScoreDesc() != CreditScoreDesc.UNSPECIFIED) {
-                    logger.info("CreditScore check has been completed from Credit Check agency, for verification ID : "
-                            + creditApplicationId.toString() + " with CreditScore rating : "
-                            + creditApplicationState.getCreditScoreCheckRating() + " and credit score desc : "
-                            + creditApplicationState.getCreditScoreDesc().toString());
-                    new FAPostCreditCheckProcessor(creditApplicationId, null, proxy,
-                            creditApplicationState.getCreditScoreDesc()).processCreditScores();
-                }
-
-            }));
-
-        } catch (Exception e) {
-            logger.error("Exception occurred", e.getMessage());
-            e.printStackTrace();
-        }
+                new FAPostCreditCheckProcessor(creditApplicationId, null, proxy,
+                        creditApplicationState.getCreditScoreDesc()).processCreditScores();
+            }
+        });
     }
 
 }
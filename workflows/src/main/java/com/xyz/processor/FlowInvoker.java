@@ -0,0 +1,50 @@
+package com.xyz.processor;
+
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.messaging.FlowProgressHandle;
+import rx.Subscription;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Starts flows over RPC for the processors and waits for their result.
+ *
+ * Flows are started with {@code startFlowDynamic} unless the caller asks for the progress, as a tracked flow opens a
+ * progress feed on the node and on the client. The flow handle, and with it every feed of the flow, is closed once
+ * the result is available or the wait failed.
+ */
+public class FlowInvoker {
+    private final CordaRPCOps proxy;
+
+    public FlowInvoker(CordaRPCOps proxy) {
+        this.proxy = proxy;
+    }
+
+    public <T> T run(Class<? extends FlowLogic<? extends T>> flowClass, Object... args)
+            throws InterruptedException, ExecutionException {
+        try (FlowHandle<T> flowHandle = proxy.startFlowDynamic(flowClass, args)) {
+            return flowHandle.getReturnValue().get();
+        }
+    }
+
+    /**
+     * Starts a tracked flow and passes each progress step to the listener until the flow completes.
+     */
+    public <T> T runTracked(Consumer<String> progressListener, Class<? extends FlowLogic<? extends T>> flowClass,
+                            Object... args) throws InterruptedException, ExecutionException {
+        try (FlowProgressHandle<T> flowHandle = proxy.startTrackedFlowDynamic(flowClass, args)) {
+            // A failed flow also fails its progress feed, the failure is reported from the return value.
+            Subscription progressSubscription = flowHandle.getProgress().subscribe(progressListener::accept,
+                    error -> {
+                    });
+            try {
+                return flowHandle.getReturnValue().get();
+            } finally {
+                progressSubscription.unsubscribe();
+            }
+        }
+    }
+}
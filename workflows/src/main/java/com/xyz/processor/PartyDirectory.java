@@ -0,0 +1,109 @@
+package com.xyz.processor;
+
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.NodeInfo;
+import net.corda.core.node.services.NetworkMapCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the counterparties of the loaning process from their configured X500 names.
+ *
+ * Parties are resolved once from the network map snapshot and kept current from the network map feed, so processors
+ * do not resolve them over RPC on every invocation. A party missing from the network map is resolved over RPC on
+ * lookup, and the feed is reopened on lookup after it failed.
+ */
+public class PartyDirectory implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PartyDirectory.class);
+
+    public enum Role {FINANCE_AGENCY, CREDIT_AGENCY, BANK}
+
+    private final CordaRPCOps proxy;
+    private final Map<Role, CordaX500Name> names;
+    private final Map<Role, Party> parties = new ConcurrentHashMap<>();
+    private Subscription subscription;
+    private volatile boolean live = false;
+
+    public PartyDirectory(CordaRPCOps proxy, Map<Role, CordaX500Name> names) {
+        this.proxy = proxy;
+        this.names = new EnumMap<>(names);
+        for (Role role : Role.values()) {
+            if (!this.names.containsKey(role))
+                throw new IllegalArgumentException("No X500 name configured for the " + role + " party");
+        }
+    }
+
+    public synchronized void start() {
+        if (live)
+            return;
+        if (subscription != null)
+            subscription.unsubscribe();
+        try {
+            DataFeed<List<NodeInfo>, NetworkMapCache.MapChange> networkMapFeed = proxy.networkMapFeed();
+            subscription = networkMapFeed.getUpdates().subscribe(this::onChange, error -> {
+                live = false;
+                logger.error("Network map feed failed, parties are resolved on lookup until it is reopened", error);
+            });
+            networkMapFeed.getSnapshot().forEach(this::put);
+            live = true;
+            logger.info("Party directory resolved " + parties.size() + " of " + names.size() + " parties");
+        } catch (Exception e) {
+            logger.error("Network map feed could not be opened, parties are resolved on lookup", e);
+        }
+    }
+
+    private void onChange(NetworkMapCache.MapChange change) {
+        if (change instanceof NetworkMapCache.MapChange.Removed) {
+            change.getNode().getLegalIdentities().forEach(party -> names.forEach((role, name) -> {
+                if (name.equals(party.getName()))
+                    parties.remove(role);
+            }));
+        } else {
+            put(change.getNode());
+        }
+    }
+
+    private void put(NodeInfo nodeInfo) {
+        nodeInfo.getLegalIdentities().forEach(party -> names.forEach((role, name) -> {
+            if (name.equals(party.getName()))
+                parties.put(role, party);
+        }));
+    }
+
+    /**
+     * Returns the party of the role, or throws IllegalStateException if it is not on the network map.
+     */
+    public Party getParty(Role role) {
+        Party party = parties.get(role);
+        if (party != null)
+            return party;
+        if (!live)
+            start();
+        party = parties.get(role);
+        if (party != null)
+            return party;
+        party = proxy.wellKnownPartyFromX500Name(names.get(role));
+        if (party == null)
+            throw new IllegalStateException("Party " + names.get(role) + " is not on the network map");
+        parties.putIfAbsent(role, party);
+        return party;
+    }
+
+    @Override
+    public synchronized void close() {
+        live = false;
+        if (subscription != null) {
+            subscription.unsubscribe();
+            subscription = null;
+        }
+    }
+}
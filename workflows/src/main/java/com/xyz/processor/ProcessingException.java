@@ -0,0 +1,11 @@
+package com.xyz.processor;
+
+/**
+ * Thrown by the processors when a step of the loan process could not be completed, so that the observers retry the
+ * state instead of recording it as handled and the controllers report the failure.
+ */
+public class ProcessingException extends RuntimeException {
+    public ProcessingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,9 +1,11 @@
 package com.xyz.processor.bank;
 
 import com.xyz.flows.bank.BankLoanDisbursementFlow;
+import com.xyz.processor.FlowInvoker;
+import com.xyz.processor.PartyDirectory;
+import com.xyz.processor.ProcessingException;
 import com.xyz.states.BankFinanceState;
 import net.corda.core.contracts.UniqueIdentifier;
-import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.transactions.SignedTransaction;
@@ -15,21 +17,25 @@ public class BankProcessingProcessor {
 
     private final UniqueIdentifier bankProcessingApplicationId;
     private final CordaRPCOps proxy;
+    private final FlowInvoker flowInvoker;
+    private final PartyDirectory partyDirectory;
 
-    public BankProcessingProcessor(UniqueIdentifier bankProcessingApplicationId, CordaRPCOps proxy) {
+    public BankProcessingProcessor(UniqueIdentifier bankProcessingApplicationId, CordaRPCOps proxy,
+                                   PartyDirectory partyDirectory) {
         this.bankProcessingApplicationId = bankProcessingApplicationId;
         this.proxy = proxy;
+        this.flowInvoker = new FlowInvoker(proxy);
+        this.partyDirectory = partyDirectory;
     }
 
     public String processLoanDisbursement() {
         try {
             logger.info("Starting processing for bank processing for Processing ApplicationID : "
                     + this.bankProcessingApplicationId.getId().toString());
-            Party financeAgencyNode = proxy
-                    .wellKnownPartyFromX500Name(CordaX500Name.parse("O=XYZLoaning,L=London,C=GB"));
+            Party financeAgencyNode = partyDirectory.getParty(PartyDirectory.Role.FINANCE_AGENCY);
 
-            SignedTransaction tx = proxy.startTrackedFlowDynamic(BankLoanDisbursementFlow.class,
-                    this.bankProcessingApplicationId, financeAgencyNode).getReturnValue().get();
+            SignedTransaction tx = flowInvoker.run(BankLoanDisbursementFlow.class,
+                    this.bankProcessingApplicationId, financeAgencyNode);
             BankFinanceState finanaceState = ((BankFinanceState) tx.getTx().getOutputs().get(0).getData());
 
             logger.info("Bank Finance is processed for bank processing ID : "
@@ -40,8 +46,8 @@ public class BankProcessingProcessor {
             logger.error("Error while processing bank loan for bank processing ID : "
                     + bankProcessingApplicationId.getId().toString());
             e.printStackTrace();
-            return "Error while processing bank loan for bank processing ID : "
-                    + bankProcessingApplicationId.getId().toString();
+            throw new ProcessingException("Error while processing bank loan for bank processing ID : "
+                    + bankProcessingApplicationId.getId().toString(), e);
         }
     }
 }
\ No newline at end of file
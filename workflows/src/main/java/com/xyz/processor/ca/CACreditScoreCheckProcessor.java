@@ -1,9 +1,11 @@
 package com.xyz.processor.ca;
 
 import com.xyz.flows.ca.CreditCheckProcessingFlow;
+import com.xyz.processor.FlowInvoker;
+import com.xyz.processor.PartyDirectory;
+import com.xyz.processor.ProcessingException;
 import com.xyz.states.CreditRatingState;
 import net.corda.core.contracts.UniqueIdentifier;
-import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.transactions.SignedTransaction;
@@ -15,21 +17,25 @@ public class CACreditScoreCheckProcessor {
 
     private final UniqueIdentifier creditCheckApplicationId;
     private final CordaRPCOps proxy;
+    private final FlowInvoker flowInvoker;
+    private final PartyDirectory partyDirectory;
 
-    public CACreditScoreCheckProcessor(UniqueIdentifier creditCheckApplicationId, CordaRPCOps proxy) {
+    public CACreditScoreCheckProcessor(UniqueIdentifier creditCheckApplicationId, CordaRPCOps proxy,
+                                       PartyDirectory partyDirectory) {
         this.creditCheckApplicationId = creditCheckApplicationId;
         this.proxy = proxy;
+        this.flowInvoker = new FlowInvoker(proxy);
+        this.partyDirectory = partyDirectory;
     }
 
     public String processCreditScoreCheck() {
         try {
             logger.info("Starting processing for CreditScore evaluation for CreditCheck ApplicationID : "
                     + this.creditCheckApplicationId.getId().toString());
-            Party financeAgencyNode = proxy
-                    .wellKnownPartyFromX500Name(CordaX500Name.parse("O=XYZLoaning,L=London,C=GB"));
+            Party financeAgencyNode = partyDirectory.getParty(PartyDirectory.Role.FINANCE_AGENCY);
 
-            SignedTransaction tx = proxy.startTrackedFlowDynamic(CreditCheckProcessingFlow.class,
-                    this.creditCheckApplicationId, financeAgencyNode).getReturnValue().get();
+            SignedTransaction tx = flowInvoker.run(CreditCheckProcessingFlow.class,
+                    this.creditCheckApplicationId, financeAgencyNode);
             CreditRatingState caState = ((CreditRatingState) tx.getTx().getOutputs().get(0).getData());
 
             logger.info("Credit Check flow updated with CreditCheck Application Id : "
@@ -40,8 +46,8 @@ public class CACreditScoreCheckProcessor {
             logger.error("Error while initiating CreditScoreCheckFlow for credit verificationID : "
                     + creditCheckApplicationId.getId().toString());
             e.printStackTrace();
-            return "Error while initiating CreditScoreCheckFlow for credit verificationID : "
-                    + creditCheckApplicationId.getId().toString();
+            throw new ProcessingException("Error while initiating CreditScoreCheckFlow for credit verificationID : "
+                    + creditCheckApplicationId.getId().toString(), e);
         }
     }
 }
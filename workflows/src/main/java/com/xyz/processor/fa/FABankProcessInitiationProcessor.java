@@ -2,11 +2,11 @@ package com.xyz.processor.fa;
 
 
 import com.xyz.flows.fa.BankLoanProcessingInitiationFlow;
-import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.processor.FlowInvoker;
+import com.xyz.processor.PartyDirectory;
+import com.xyz.processor.ProcessingException;
 import com.xyz.states.BankFinanceState;
-import com.xyz.states.LoanApplicationState;
 import net.corda.core.contracts.UniqueIdentifier;
-import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.transactions.SignedTransaction;
@@ -18,37 +18,37 @@ public class FABankProcessInitiationProcessor {
 
     private final UniqueIdentifier loanApplicationID;
     private final CordaRPCOps proxy;
+    private final FlowInvoker flowInvoker;
+    private final PartyDirectory partyDirectory;
 
-    public FABankProcessInitiationProcessor(UniqueIdentifier loanApplicationId, CordaRPCOps proxy) {
+    public FABankProcessInitiationProcessor(UniqueIdentifier loanApplicationId, CordaRPCOps proxy,
+                                            PartyDirectory partyDirectory) {
         this.loanApplicationID = loanApplicationId;
         this.proxy = proxy;
+        this.flowInvoker = new FlowInvoker(proxy);
+        this.partyDirectory = partyDirectory;
     }
 
     public String processBankInitiation() {
         try {
             logger.info("Initiating Bank processing for LoanApplicationID : " + loanApplicationID.toString());
 
-            Party bankNode = proxy.wellKnownPartyFromX500Name(CordaX500Name.parse("O=MTCBank,L=New York,C=US"));
-            SignedTransaction bankProcessing = proxy
-                    .startTrackedFlowDynamic(BankLoanProcessingInitiationFlow.class, loanApplicationID, bankNode)
-                    .getReturnValue().get();
+            Party bankNode = partyDirectory.getParty(PartyDirectory.Role.BANK);
+            SignedTransaction bankProcessing = flowInvoker.run(BankLoanProcessingInitiationFlow.class,
+                    loanApplicationID, bankNode);
             BankFinanceState bankState = ((BankFinanceState) bankProcessing.getTx().getOutputs().get(0).getData());
             logger.info("Loan processing initiated with Bank with Bank Application ID : "
                     + bankState.getBankLoanProcessingId().toString() + " with status : "
                     + bankState.getBankProcessingStatus().toString());
 
-            SignedTransaction loanUpdateTx = proxy.startTrackedFlowDynamic(LoanApplicationCreationFlow.class,
-                    bankState.getBankLoanProcessingId(), loanApplicationID, bankState.getBankProcessingStatus())
-                    .getReturnValue().get();
-            LoanApplicationState laState = ((LoanApplicationState) loanUpdateTx.getTx().getOutputs().get(0).getData());
             logger.info("Processed Bank Process initiation with Bank processing ID: " + bankState.getBankLoanProcessingId().getId().toString());
             return "Bank processing initated with Bank processing ID : " + bankState.getBankLoanProcessingId().getId().toString();
         } catch (Exception e) {
             logger.error("Error while initiating Bank Processing Initiation for loanApplicationId : "
                     + loanApplicationID.getId().toString());
             e.printStackTrace();
-            return "Error while initiating Bank Processing Initiation for loanApplicationId : "
-                    + loanApplicationID.getId().toString();
+            throw new ProcessingException("Error while initiating Bank Processing Initiation for loanApplicationId : "
+                    + loanApplicationID.getId().toString(), e);
         }
     }
 }
\ No newline at end of file
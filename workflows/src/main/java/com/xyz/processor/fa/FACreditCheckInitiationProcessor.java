@@ -2,13 +2,14 @@ package com.xyz.processor.fa;
 
 import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.flows.fa.CreditCheckInitiationFlow;
-import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.processor.FlowInvoker;
+import com.xyz.processor.PartyDirectory;
+import com.xyz.processor.ProcessingException;
 import com.xyz.states.CreditRatingState;
 import com.xyz.states.LoanApplicationState;
 import com.xyz.states.schema.LoaningProcessSchemas;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
-import net.corda.core.identity.CordaX500Name;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.node.services.vault.Builder;
@@ -25,11 +26,15 @@ public class FACreditCheckInitiationProcessor {
 
     private final UniqueIdentifier loanApplicationId;
     private final CordaRPCOps proxy;
+    private final FlowInvoker flowInvoker;
+    private final PartyDirectory partyDirectory;
 
     public FACreditCheckInitiationProcessor(UniqueIdentifier loanApplicationId,
-                                            CordaRPCOps proxy) {
+                                            CordaRPCOps proxy, PartyDirectory partyDirectory) {
         this.loanApplicationId = loanApplicationId;
         this.proxy = proxy;
+        this.flowInvoker = new FlowInvoker(proxy);
+        this.partyDirectory = partyDirectory;
     }
 
     public String processCreditCheckInitiation() {
@@ -44,26 +49,20 @@ public class FACreditCheckInitiationProcessor {
             if (applicationStatus != LoanApplicationStatus.APPLIED)
                 throw new IllegalStateException("Loan Application ID :" + loanApplicationId + " is not in its initial - APPLIED state");
 
-            Party creditCheckAgency = proxy
-                    .wellKnownPartyFromX500Name(CordaX500Name.parse("O=NewShireCreditRatingAgency,L=New York,C=US"));
-            SignedTransaction tx = proxy
-                    .startTrackedFlowDynamic(CreditCheckInitiationFlow.class, loanApplicationId, creditCheckAgency)
-                    .getReturnValue().get();
+            Party creditCheckAgency = partyDirectory.getParty(PartyDirectory.Role.CREDIT_AGENCY);
+            SignedTransaction tx = flowInvoker.run(CreditCheckInitiationFlow.class,
+                    loanApplicationId, creditCheckAgency);
             creditCheckApplicationId = ((CreditRatingState) tx.getTx().getOutputs().get(0).getData())
                     .getLoanVerificationId();
             logger.info("Credit Check flow initiated with CreditCheck Application Id : "
-                    + creditCheckApplicationId.toString() + ". Updating loan application status...");
-
-            SignedTransaction loanUpdateTx = proxy.startTrackedFlowDynamic(LoanApplicationCreationFlow.class,
-                    loanApplicationId, creditCheckApplicationId).getReturnValue().get();
-            LoanApplicationState laState = ((LoanApplicationState) loanUpdateTx.getTx().getOutputs().get(0).getData());
+                    + creditCheckApplicationId.toString());
             logger.info("Updated Loan application ID: " + loanApplicationId.getId().toString() + " with status : " + LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY.toString());
             return "CreditCheck verification process initiated with VerificationID: " + creditCheckApplicationId.getId().toString();
         } catch (Exception e) {
             logger.error("Error while initiating CreditScoreCheckFlow for loanApplicationId : "
                     + loanApplicationId.getId().toString());
             e.printStackTrace();
-            return "CreditCheck verification initiation process failed for Loan APP ID:  " + loanApplicationId.getId().toString() + ", ERROR: " + e.getMessage();
+            throw new ProcessingException("CreditCheck verification initiation process failed for Loan APP ID:  " + loanApplicationId.getId().toString() + ", ERROR: " + e.getMessage(), e);
         }
     }
 
@@ -1,7 +1,10 @@
 package com.xyz.processor.fa;
 
 import com.xyz.constants.BankProcessingStatus;
+import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.processor.FlowInvoker;
+import com.xyz.processor.ProcessingException;
 import com.xyz.states.BankFinanceState;
 import com.xyz.states.LoanApplicationState;
 import com.xyz.states.schema.LoaningProcessSchemas;
@@ -23,6 +26,7 @@ public class FAPostBankStatusUpdateProcessor {
     private UniqueIdentifier bankProcessingId;
     private UniqueIdentifier loanApplicationId;
     private final CordaRPCOps proxy;
+    private final FlowInvoker flowInvoker;
     private BankProcessingStatus bankProcessingStatus;
 
     public FAPostBankStatusUpdateProcessor(UniqueIdentifier bankProcessingId, UniqueIdentifier loanApplicationId, CordaRPCOps proxy,
@@ -30,6 +34,7 @@ public class FAPostBankStatusUpdateProcessor {
         this.bankProcessingId = bankProcessingId;
         this.loanApplicationId = loanApplicationId;
         this.proxy = proxy;
+        this.flowInvoker = new FlowInvoker(proxy);
         this.bankProcessingStatus = bankProcessingStatus;
     }
 
@@ -42,9 +47,17 @@ public class FAPostBankStatusUpdateProcessor {
             }
 
             logger.info("Processing BankFinance processing Status : " + bankProcessingId.toString());
-            SignedTransaction loanUpdateTx = proxy
-                    .startTrackedFlowDynamic(LoanApplicationCreationFlow.class, bankProcessingId, bankProcessingStatus)
-                    .getReturnValue().get();
+            // The bank updates the application in its processing transaction when it was forwarded along the bank
+            // processing initiation.
+            LoanApplicationStatus applicationStatus = fetchLoanApplicationStatus(proxy, bankProcessingId);
+            if (applicationStatus != LoanApplicationStatus.FORWARDED_TO_BANK) {
+                logger.info("Application status already updated for Bank processing ID: " + bankProcessingId.toString()
+                        + " Status : " + applicationStatus);
+                return "Bank Finance State already processed for bank finance Id: "
+                        + bankProcessingId.getId().toString() + " Status : " + applicationStatus;
+            }
+            SignedTransaction loanUpdateTx = flowInvoker.run(LoanApplicationCreationFlow.class,
+                    bankProcessingId, bankProcessingStatus);
             LoanApplicationState laState = ((LoanApplicationState) loanUpdateTx.getTx().getOutputs().get(0).getData());
             logger.info("Application status for the Loan application is Updated LoanApplication Id: "
                     + laState.getLoanApplicationId().toString() + " Verfication ID: "
@@ -56,8 +69,25 @@ public class FAPostBankStatusUpdateProcessor {
             String message = loanApplicationId == null ? " for Bank processing ID : " + bankProcessingId.getId().toString() :
                     " for LoanApplicationId : " + loanApplicationId.getId().toString();
             logger.error("BankFinanceUpdate processing Failed" + message + ", ERROR: " + e.getMessage());
-            return "BankFinanceUpdate processing Failed" + message + ", ERROR: " + e.getMessage();
+            throw new ProcessingException("BankFinanceUpdate processing Failed" + message + ", ERROR: " + e.getMessage(), e);
+        }
+    }
+
+    private LoanApplicationStatus fetchLoanApplicationStatus(CordaRPCOps proxy, UniqueIdentifier bankProcessingId) throws
+            IllegalStateException {
+        QueryCriteria queryCriteria = null;
+        try {
+            queryCriteria = new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.equal(QueryCriteriaUtils.getField("bankProcessingId",
+                            LoaningProcessSchemas.PersistentLoanApplicationState.class), bankProcessingId.getId()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Field name bankProcessingId does not exist in PersistentLoanApplicationState class , " + e.getMessage());
         }
+        List<StateAndRef<LoanApplicationState>> stateAndRefs = proxy.vaultQueryByCriteria(queryCriteria, LoanApplicationState.class).getStates();
+        if (stateAndRefs == null || stateAndRefs.isEmpty())
+            throw new IllegalStateException("No BankProcessing ID :  " + bankProcessingId.getId().toString() + " found in the LoanApplicationState.");
+        return stateAndRefs.get(0).getState().getData().getApplicationStatus();
     }
 
     private BankFinanceState fetchBankFinanceState(CordaRPCOps proxy, UniqueIdentifier loanApplicationId) throws
@@ -1,7 +1,10 @@
 package com.xyz.processor.fa;
 
 import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
 import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.processor.FlowInvoker;
+import com.xyz.processor.ProcessingException;
 import com.xyz.states.CreditRatingState;
 import com.xyz.states.LoanApplicationState;
 import com.xyz.states.schema.LoaningProcessSchemas;
@@ -23,6 +26,7 @@ public class FAPostCreditCheckProcessor {
     private UniqueIdentifier creditApplicationId;
     private UniqueIdentifier loanApplicationId;
     private final CordaRPCOps proxy;
+    private final FlowInvoker flowInvoker;
     private CreditScoreDesc scoreDesc;
 
     public FAPostCreditCheckProcessor(UniqueIdentifier creditApplicationId, UniqueIdentifier loanApplicationId, CordaRPCOps proxy,
@@ -30,6 +34,7 @@ public class FAPostCreditCheckProcessor {
         this.creditApplicationId = creditApplicationId;
         this.loanApplicationId = loanApplicationId;
         this.proxy = proxy;
+        this.flowInvoker = new FlowInvoker(proxy);
         this.scoreDesc = scoreDesc;
     }
 
@@ -43,9 +48,16 @@ public class FAPostCreditCheckProcessor {
 
             logger.info(
                     "CreditScore check has been completed from Credit Check agency : " + creditApplicationId.toString());
-            SignedTransaction loanUpdateTx = proxy
-                    .startTrackedFlowDynamic(LoanApplicationCreationFlow.class, creditApplicationId, scoreDesc)
-                    .getReturnValue().get();
+            // The credit agency updates the application in its rating transaction when it was forwarded along the
+            // credit check initiation.
+            LoanApplicationStatus applicationStatus = fetchLoanApplicationStatus(proxy, creditApplicationId);
+            if (applicationStatus != LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY) {
+                logger.info("Application status already updated for Verfication ID: " + creditApplicationId.toString()
+                        + " Status : " + applicationStatus);
+                return "Application Status already updated for Loan Verification Id : "
+                        + creditApplicationId.getId().toString() + " Status : " + applicationStatus;
+            }
+            SignedTransaction loanUpdateTx = flowInvoker.run(LoanApplicationCreationFlow.class, creditApplicationId, scoreDesc);
             LoanApplicationState laState = ((LoanApplicationState) loanUpdateTx.getTx().getOutputs().get(0).getData());
             logger.info("Application status for the Loan application is Updated LoanApplication Id: "
                     + laState.getLoanApplicationId().toString() + " Verfication ID: "
@@ -57,8 +69,25 @@ public class FAPostCreditCheckProcessor {
             String message = loanApplicationId == null ? " for verification ID : " + creditApplicationId.getId().toString() :
                     " for LoanApplicationId : " + loanApplicationId.getId().toString();
             logger.error("CreditScores processing Failed" + message + ", ERROR: " + e.getMessage());
-            return "CreditScores processing Failed" + message + ", ERROR: " + e.getMessage();
+            throw new ProcessingException("CreditScores processing Failed" + message + ", ERROR: " + e.getMessage(), e);
+        }
+    }
+
+    private LoanApplicationStatus fetchLoanApplicationStatus(CordaRPCOps proxy, UniqueIdentifier verificationId) throws
+            IllegalStateException {
+        QueryCriteria queryCriteria = null;
+        try {
+            queryCriteria = new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.equal(QueryCriteriaUtils.getField("loanVerificationId",
+                            LoaningProcessSchemas.PersistentLoanApplicationState.class), verificationId.getId()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IllegalStateException("Field name loanVerificationId does not exist in PersistentLoanApplicationState class , " + e.getMessage());
         }
+        List<StateAndRef<LoanApplicationState>> stateAndRefs = proxy.vaultQueryByCriteria(queryCriteria, LoanApplicationState.class).getStates();
+        if (stateAndRefs == null || stateAndRefs.isEmpty())
+            throw new IllegalStateException("No Verification ID :  " + verificationId.getId().toString() + " found in the LoanApplicationState.");
+        return stateAndRefs.get(0).getState().getData().getApplicationStatus();
     }
 
     private CreditRatingState fetchCreditVerificationID(CordaRPCOps proxy, UniqueIdentifier loanApplicationId) throws
@@ -0,0 +1,286 @@
+package com.xyz.flows;
+
+import com.xyz.constants.BankProcessingStatus;
+import com.xyz.constants.CreditScoreDesc;
+import com.xyz.constants.LoanApplicationStatus;
+import com.xyz.flows.bank.BankLoanDisbursementFlow;
+import com.xyz.flows.ca.CreditCheckProcessingFlow;
+import com.xyz.flows.fa.BankLoanProcessingInitiationFlow;
+import com.xyz.flows.fa.CreditCheckInitiationFlow;
+import com.xyz.flows.fa.LoanApplicationBulkCreationFlow;
+import com.xyz.flows.fa.LoanApplicationCreationFlow;
+import com.xyz.flows.fa.LoanApplicationRequest;
+import com.xyz.states.BankFinanceState;
+import com.xyz.states.CreditRatingState;
+import com.xyz.states.LoanApplicationState;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.MockNodeParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the loan application through the finance agency, credit agency and bank flows on a mock network.
+ */
+public class LoanProcessingFlowsTest {
+    private static final int RATING_ATTEMPTS = 20;
+
+    private MockNetwork network;
+    private StartedMockNode financeAgency;
+    private StartedMockNode creditAgency;
+    private StartedMockNode bank;
+    private Party financeAgencyParty;
+    private Party creditAgencyParty;
+    private Party bankParty;
+
+    @Before
+    public void setup() {
+        network = new MockNetwork(new MockNetworkParameters().withCordappsForAllNodes(Arrays.asList(
+                TestCordapp.findCordapp("com.xyz.contracts"),
+                TestCordapp.findCordapp("com.xyz.flows"))));
+        financeAgency = network.createNode(new MockNodeParameters()
+                .withLegalName(new CordaX500Name("XYZLoaning", "London", "GB")));
+        creditAgency = network.createNode(new MockNodeParameters()
+                .withLegalName(new CordaX500Name("NewShireCreditRatingAgency", "New York", "US")));
+        bank = network.createNode(new MockNodeParameters()
+                .withLegalName(new CordaX500Name("MTCBank", "New York", "US")));
+        financeAgencyParty = financeAgency.getInfo().getLegalIdentities().get(0);
+        creditAgencyParty = creditAgency.getInfo().getLegalIdentities().get(0);
+        bankParty = bank.getInfo().getLegalIdentities().get(0);
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void batchOfApplicationsIsRecordedInOneTransaction() throws Exception {
+        SignedTransaction tx = run(financeAgency, new LoanApplicationBulkCreationFlow(Arrays.asList(
+                new LoanApplicationRequest("XYZ Retail", "Retail", 10000L),
+                new LoanApplicationRequest("ABC Foods", "Food", 25000L))));
+
+        List<LoanApplicationState> applications = tx.getTx().outputsOfType(LoanApplicationState.class);
+        assertEquals(2, applications.size());
+        assertEquals("XYZ Retail", applications.get(0).getCompanyName());
+        assertEquals("ABC Foods", applications.get(1).getCompanyName());
+        assertEquals(2, vaultStates(financeAgency, LoanApplicationState.class).size());
+    }
+
+    @Test
+    public void batchWithAnInvalidApplicationRecordsNothing() throws Exception {
+        try {
+            run(financeAgency, new LoanApplicationBulkCreationFlow(Arrays.asList(
+                    new LoanApplicationRequest("XYZ Retail", "Retail", 10000L),
+                    new LoanApplicationRequest("ABC Foods", "Food", 0L))));
+            fail("A batch with an invalid application was recorded");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("Minimum Loan amount Validation failed"));
+        }
+        assertEquals(0, vaultStates(financeAgency, LoanApplicationState.class).size());
+    }
+
+    @Test
+    public void emptyBatchIsRefused() throws Exception {
+        try {
+            run(financeAgency, new LoanApplicationBulkCreationFlow(Collections.emptyList()));
+            fail("An empty batch was accepted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void creditAgencySignsTheCreditCheckRecordedWithTheForwardedApplication() throws Exception {
+        UniqueIdentifier loanApplicationId = applyForLoan();
+
+        SignedTransaction tx = run(financeAgency, new CreditCheckInitiationFlow(loanApplicationId, creditAgencyParty));
+
+        // The acceptor of the credit agency signed along the finance agency.
+        tx.verifyRequiredSignatures();
+        StateAndRef<LoanApplicationState> forwarded = unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId);
+        assertEquals(tx.getId(), forwarded.getRef().getTxhash());
+        assertEquals(LoanApplicationStatus.FORWARDED_TO_CREDIT_CHECK_AGENCY,
+                forwarded.getState().getData().getApplicationStatus());
+        StateAndRef<CreditRatingState> creditCheck = unconsumed(creditAgency, CreditRatingState.class,
+                forwarded.getState().getData().getLoanVerificationId());
+        assertEquals(tx.getId(), creditCheck.getRef().getTxhash());
+        assertEquals(financeAgencyParty, creditCheck.getState().getData().getLoaningAgency());
+        // The credit agency keeps the forwarded application in the recorded transaction, not in its vault.
+        assertNotNull(creditAgency.transaction(() ->
+                creditAgency.getServices().getValidatedTransactions().getTransaction(tx.getId())));
+        assertEquals(0, vaultStates(creditAgency, LoanApplicationState.class).size());
+    }
+
+    @Test
+    public void creditAgencyRatingUpdatesTheForwardedApplication() throws Exception {
+        UniqueIdentifier loanApplicationId = applyForLoan();
+        UniqueIdentifier loanVerificationId = forwardToCreditCheck(loanApplicationId);
+
+        SignedTransaction tx = run(creditAgency, new CreditCheckProcessingFlow(loanVerificationId, financeAgencyParty));
+
+        tx.verifyRequiredSignatures();
+        CreditRatingState rated = (CreditRatingState) tx.getTx().getOutputs().get(0).getData();
+        StateAndRef<LoanApplicationState> updated = unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId);
+        assertEquals(tx.getId(), updated.getRef().getTxhash());
+        assertEquals(expectedStatus(rated.getCreditScoreDesc()), updated.getState().getData().getApplicationStatus());
+    }
+
+    @Test
+    public void ratingWithoutTheApplicationLeavesItToTheFinanceAgency() throws Exception {
+        UniqueIdentifier loanApplicationId = applyForLoan();
+        UniqueIdentifier loanVerificationId = forwardToCreditCheck(loanApplicationId);
+        StateAndRef<LoanApplicationState> forwarded = unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId);
+
+        SignedTransaction tx = run(creditAgency,
+                new CreditCheckProcessingFlow(loanVerificationId, financeAgencyParty, false));
+
+        assertTrue(tx.getTx().outputsOfType(LoanApplicationState.class).isEmpty());
+        assertEquals(forwarded.getRef(), unconsumed(financeAgency, LoanApplicationState.class, loanApplicationId)
+                .getRef());
+
+        // The finance agency records the outcome on its own, as before the application moved with the rating.
+        CreditScoreDesc scoreDesc = ((CreditRatingState) tx.getTx().getOutputs().get(0).getData()).getCreditScoreDesc();
+        run(financeAgency, new LoanApplicationCreationFlow(loanVerificationId, scoreDesc));
+        assertEquals(expectedStatus(scoreDesc), unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId).getState().getData().getApplicationStatus());
+    }
+
+    @Test
+    public void processedBankLoanDisbursesTheForwardedApplication() throws Exception {
+        UniqueIdentifier loanApplicationId = passedCreditCheck(false);
+        UniqueIdentifier bankProcessingId = forwardToBank(loanApplicationId);
+
+        SignedTransaction tx = run(bank, new BankLoanDisbursementFlow(bankProcessingId, financeAgencyParty));
+
+        tx.verifyRequiredSignatures();
+        assertEquals(BankProcessingStatus.PROCESSED,
+                ((BankFinanceState) tx.getTx().getOutputs().get(0).getData()).getBankProcessingStatus());
+        StateAndRef<LoanApplicationState> updated = unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId);
+        assertEquals(tx.getId(), updated.getRef().getTxhash());
+        assertEquals(LoanApplicationStatus.LOAN_DISBURSED, updated.getState().getData().getApplicationStatus());
+    }
+
+    @Test
+    public void rejectedBankLoanRejectsTheForwardedApplication() throws Exception {
+        UniqueIdentifier loanApplicationId = passedCreditCheck(true);
+        UniqueIdentifier bankProcessingId = forwardToBank(loanApplicationId);
+
+        SignedTransaction tx = run(bank, new BankLoanDisbursementFlow(bankProcessingId, financeAgencyParty));
+
+        tx.verifyRequiredSignatures();
+        assertEquals(BankProcessingStatus.REJECTED,
+                ((BankFinanceState) tx.getTx().getOutputs().get(0).getData()).getBankProcessingStatus());
+        StateAndRef<LoanApplicationState> updated = unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId);
+        assertEquals(tx.getId(), updated.getRef().getTxhash());
+        assertEquals(LoanApplicationStatus.REJECTED_FROM_BANK, updated.getState().getData().getApplicationStatus());
+    }
+
+    @Test
+    public void bankProcessingIsRecordedAloneOnceTheApplicationWasUpdated() throws Exception {
+        UniqueIdentifier loanApplicationId = passedCreditCheck(false);
+        UniqueIdentifier bankProcessingId = forwardToBank(loanApplicationId);
+        // The finance agency records the bank decision on its own before the bank does.
+        run(financeAgency, new LoanApplicationCreationFlow(bankProcessingId, BankProcessingStatus.PROCESSED));
+        StateAndRef<LoanApplicationState> recorded = unconsumed(financeAgency, LoanApplicationState.class,
+                loanApplicationId);
+
+        SignedTransaction tx = run(bank, new BankLoanDisbursementFlow(bankProcessingId, financeAgencyParty));
+
+        assertTrue(tx.getTx().outputsOfType(LoanApplicationState.class).isEmpty());
+        StateAndRef<BankFinanceState> processed = unconsumed(bank, BankFinanceState.class, bankProcessingId);
+        assertEquals(tx.getId(), processed.getRef().getTxhash());
+        assertEquals(BankProcessingStatus.PROCESSED, processed.getState().getData().getBankProcessingStatus());
+        assertEquals(recorded.getRef(), unconsumed(financeAgency, LoanApplicationState.class, loanApplicationId)
+                .getRef());
+    }
+
+    private UniqueIdentifier applyForLoan() throws Exception {
+        SignedTransaction tx = run(financeAgency, new LoanApplicationCreationFlow("XYZ Retail", "Retail", 10000L));
+        return ((LoanApplicationState) tx.getTx().getOutputs().get(0).getData()).getLoanApplicationId();
+    }
+
+    private UniqueIdentifier forwardToCreditCheck(UniqueIdentifier loanApplicationId) throws Exception {
+        SignedTransaction tx = run(financeAgency, new CreditCheckInitiationFlow(loanApplicationId, creditAgencyParty));
+        return ((CreditRatingState) tx.getTx().getOutputs().get(0).getData()).getLoanVerificationId();
+    }
+
+    /**
+     * Applies for loans until the credit agency rates one POOR, or above POOR, as asked. The finance agency passes
+     * that application whatever its rating, as the bank decides on the rating the processing is initiated with.
+     */
+    private UniqueIdentifier passedCreditCheck(boolean poorRating) throws Exception {
+        for (int attempt = 0; attempt < RATING_ATTEMPTS; attempt++) {
+            UniqueIdentifier loanApplicationId = applyForLoan();
+            UniqueIdentifier loanVerificationId = forwardToCreditCheck(loanApplicationId);
+            SignedTransaction tx = run(creditAgency,
+                    new CreditCheckProcessingFlow(loanVerificationId, financeAgencyParty, false));
+            CreditScoreDesc scoreDesc = ((CreditRatingState) tx.getTx().getOutputs().get(0).getData())
+                    .getCreditScoreDesc();
+            if ((scoreDesc == CreditScoreDesc.POOR) == poorRating) {
+                run(financeAgency, new LoanApplicationCreationFlow(loanVerificationId, CreditScoreDesc.GOOD));
+                return loanApplicationId;
+            }
+        }
+        throw new AssertionError("No application rated " + (poorRating ? "POOR" : "above POOR") + " in "
+                + RATING_ATTEMPTS + " attempts");
+    }
+
+    private UniqueIdentifier forwardToBank(UniqueIdentifier loanApplicationId) throws Exception {
+        SignedTransaction tx = run(financeAgency, new BankLoanProcessingInitiationFlow(loanApplicationId, bankParty));
+        return ((BankFinanceState) tx.getTx().getOutputs().get(0).getData()).getBankLoanProcessingId();
+    }
+
+    private static LoanApplicationStatus expectedStatus(CreditScoreDesc scoreDesc) {
+        return scoreDesc == CreditScoreDesc.GOOD || scoreDesc == CreditScoreDesc.FAIR
+                ? LoanApplicationStatus.CREDIT_SCORE_CHECK_PASS : LoanApplicationStatus.CREDIT_SCORE_CHECK_FAILED;
+    }
+
+    private <T> T run(StartedMockNode node, FlowLogic<T> flow) throws Exception {
+        CordaFuture<T> future = node.startFlow(flow);
+        network.runNetwork();
+        return future.get();
+    }
+
+    private static <T extends ContractState> StateAndRef<T> unconsumed(StartedMockNode node, Class<T> stateType,
+                                                                      UniqueIdentifier linearId) {
+        List<StateAndRef<T>> states = node.transaction(() -> node.getServices().getVaultService().queryBy(stateType,
+                new QueryCriteria.LinearStateQueryCriteria(null, Collections.singletonList(linearId),
+                        Vault.StateStatus.UNCONSUMED, null)).getStates());
+        assertEquals(1, states.size());
+        return states.get(0);
+    }
+
+    private static <T extends ContractState> List<StateAndRef<T>> vaultStates(StartedMockNode node, Class<T> stateType) {
+        return node.transaction(() -> node.getServices().getVaultService().queryBy(stateType).getStates());
+    }
+}
@@ -0,0 +1,164 @@
+package com.xyz.observer;
+
+import com.xyz.processor.ProcessingException;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.contracts.TransactionState;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.testing.core.TestIdentity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ObserverRuntimeTest {
+    private static final String OBSERVER = "TestObserver";
+    private static final int ATTEMPTS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ManualFeed feed;
+    private KeyedObserverExecutor executor;
+    private ObserverBacklog backlog;
+    private ProcessedStateLog processedStateLog;
+    private ObserverRuntime runtime;
+
+    @Before
+    public void setup() throws Exception {
+        CordaRPCOps proxy = unreachableNode();
+        feed = new ManualFeed(proxy);
+        executor = new KeyedObserverExecutor("test-observer", 1, 10);
+        backlog = new ObserverBacklog(10, ObserverBacklog.OverflowPolicy.BLOCK, folder.newFolder().toPath());
+        processedStateLog = new ProcessedStateLog(folder.getRoot().toPath().resolve("processed.log"), 1, 10);
+        runtime = new ObserverRuntime(feed, executor, proxy, backlog, processedStateLog, ATTEMPTS, 10);
+    }
+
+    @After
+    public void tearDown() {
+        runtime.close();
+        executor.close();
+        backlog.close();
+        processedStateLog.close();
+        feed.close();
+    }
+
+    @Test
+    public void failedStateIsRetriedAndMarkedProcessedOnceHandled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch handled = new CountDownLatch(1);
+        runtime.register(OBSERVER, TestState.class, state -> "application", stateAndRef -> {
+            if (calls.incrementAndGet() == 1)
+                throw new ProcessingException("Flow failed", null);
+            handled.countDown();
+        });
+        StateAndRef<ContractState> stateAndRef = newState();
+
+        feed.produce(stateAndRef);
+
+        assertTrue("The failed state was not retried", handled.await(10, TimeUnit.SECONDS));
+        assertTrue(awaitProcessed(stateAndRef.getRef()));
+        assertEquals(2, calls.get());
+        assertEquals(1L, runtime.getStatistics().get("retried"));
+    }
+
+    @Test
+    public void stateStillFailingIsNotMarkedProcessed() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        runtime.register(OBSERVER, TestState.class, state -> "application", stateAndRef -> {
+            calls.incrementAndGet();
+            throw new ProcessingException("Flow failed", null);
+        });
+        StateAndRef<ContractState> stateAndRef = newState();
+
+        feed.produce(stateAndRef);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!Long.valueOf(1).equals(runtime.getStatistics().get("abandoned")) && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(ATTEMPTS, calls.get());
+        assertEquals(1L, runtime.getStatistics().get("abandoned"));
+        assertFalse(processedStateLog.contains(OBSERVER, stateAndRef.getRef()));
+    }
+
+    private boolean awaitProcessed(StateRef stateRef) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!processedStateLog.contains(OBSERVER, stateRef)) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static StateAndRef<ContractState> newState() {
+        TestIdentity notary = new TestIdentity(new CordaX500Name("Notary", "London", "GB"));
+        return new StateAndRef<>(new TransactionState<>(new TestState(), "com.xyz.TestContract", notary.getParty()),
+                new StateRef(SecureHash.randomSHA256(), 0));
+    }
+
+    /**
+     * A node whose every call fails, so the runtime handles the states without their recorded time and takes the
+     * failed states as unconsumed.
+     */
+    private static CordaRPCOps unreachableNode() {
+        return (CordaRPCOps) Proxy.newProxyInstance(CordaRPCOps.class.getClassLoader(),
+                new Class<?>[]{CordaRPCOps.class}, (proxy, method, args) -> {
+                    throw new IllegalStateException("Node is not reachable");
+                });
+    }
+
+    /**
+     * Passes the produced states straight to the listeners instead of tracking the vault.
+     */
+    private static class ManualFeed extends VaultStateFeed {
+        private final List<Consumer<StateAndRef<ContractState>>> listeners = new CopyOnWriteArrayList<>();
+
+        private ManualFeed(CordaRPCOps proxy) {
+            super(proxy, TestState.class);
+        }
+
+        @Override
+        public void addListener(Consumer<StateAndRef<ContractState>> listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(Consumer<StateAndRef<ContractState>> listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public synchronized void start() {
+        }
+
+        private void produce(StateAndRef<ContractState> stateAndRef) {
+            listeners.forEach(listener -> listener.accept(stateAndRef));
+        }
+    }
+
+    private static class TestState implements ContractState {
+        @Override
+        public List<AbstractParty> getParticipants() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.xyz.observer;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.contracts.TransactionState;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.BinaryComparisonOperator;
+import net.corda.core.node.services.vault.ColumnPredicate;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.testing.core.TestIdentity;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class RecordedOrderPagerTest {
+    private static final int PAGE_SIZE = 3;
+    private static final Instant BULK_RECORDED = Instant.parse("2020-06-01T10:00:00Z");
+    private static final Instant LATER_RECORDED = BULK_RECORDED.plusSeconds(1);
+
+    private final TestIdentity notary = new TestIdentity(new CordaX500Name("Notary", "London", "GB"));
+
+    @Test
+    public void bulkTransactionLargerThanAPageIsPassedWhole() {
+        FakeVault vault = new FakeVault();
+        List<StateRef> expected = new ArrayList<>(vault.record(BULK_RECORDED, 7));
+        expected.addAll(vault.record(LATER_RECORDED, 2));
+
+        assertEquals(expected, passed(vault, false));
+    }
+
+    @Test
+    public void statesConsumedWhileTheGroupIsReadDoNotShiftItsPages() {
+        FakeVault vault = new FakeVault();
+        List<StateRef> expected = new ArrayList<>(vault.record(BULK_RECORDED, 4));
+        expected.addAll(vault.record(BULK_RECORDED, 4));
+        expected.addAll(vault.record(LATER_RECORDED, 2));
+        expected.sort(Comparator.comparing(vault::recordedTime)
+                .thenComparing(ref -> ref.getTxhash().toString())
+                .thenComparingInt(StateRef::getIndex));
+
+        assertEquals(expected, passed(vault, true));
+    }
+
+    @Test
+    public void statesConsumedBeforeTheGroupIsReadAreNotPassed() {
+        FakeVault vault = new FakeVault();
+        List<StateRef> bulk = vault.record(BULK_RECORDED, 7);
+        vault.consume(bulk.get(5));
+
+        List<StateRef> expected = new ArrayList<>(bulk);
+        expected.remove(5);
+        assertEquals(expected, passed(vault, false));
+    }
+
+    /**
+     * Pages through the unconsumed states, consuming each one passed when asked, as the observers do.
+     */
+    private static List<StateRef> passed(FakeVault vault, boolean consume) {
+        List<StateRef> passed = new ArrayList<>();
+        long count = new RecordedOrderPager(vault, new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED),
+                null, PAGE_SIZE).forEach(null, null, (stateAndRef, recordedTime) -> {
+            passed.add(stateAndRef.getRef());
+            if (consume)
+                vault.consume(stateAndRef.getRef());
+        });
+        assertEquals(passed.size(), count);
+        return passed;
+    }
+
+    /**
+     * A vault answering the criteria of the pager: a state status and a recorded time condition.
+     */
+    private class FakeVault implements RecordedOrderPager.PageQuery {
+        private final List<StateAndRef<ContractState>> states = new ArrayList<>();
+        private final List<Vault.StateMetadata> metadata = new ArrayList<>();
+
+        List<StateRef> record(Instant recordedTime, int outputs) {
+            SecureHash txId = SecureHash.randomSHA256();
+            List<StateRef> refs = new ArrayList<>();
+            for (int index = 0; index < outputs; index++) {
+                StateRef ref = new StateRef(txId, index);
+                states.add(new StateAndRef<>(new TransactionState<>(new TestState(), "com.xyz.TestContract",
+                        notary.getParty()), ref));
+                metadata.add(metadata(ref, recordedTime, Vault.StateStatus.UNCONSUMED));
+                refs.add(ref);
+            }
+            return refs;
+        }
+
+        void consume(StateRef ref) {
+            int i = indexOf(ref);
+            metadata.set(i, metadata(ref, metadata.get(i).getRecordedTime(), Vault.StateStatus.CONSUMED));
+        }
+
+        Instant recordedTime(StateRef ref) {
+            return metadata.get(indexOf(ref)).getRecordedTime();
+        }
+
+        private int indexOf(StateRef ref) {
+            for (int i = 0; i < states.size(); i++) {
+                if (states.get(i).getRef().equals(ref))
+                    return i;
+            }
+            throw new IllegalArgumentException("Unknown state " + ref);
+        }
+
+        private Vault.StateMetadata metadata(StateRef ref, Instant recordedTime, Vault.StateStatus status) {
+            return new Vault.StateMetadata(ref, TestState.class.getName(), recordedTime,
+                    status == Vault.StateStatus.CONSUMED ? recordedTime : null, status, notary.getParty(), null, null,
+                    Vault.RelevancyState.RELEVANT, null);
+        }
+
+        @Override
+        public Vault.Page<ContractState> query(QueryCriteria criteria, PageSpecification paging, Sort sort) {
+            QueryCriteria.VaultQueryCriteria vaultCriteria = (QueryCriteria.VaultQueryCriteria) criteria;
+            List<Integer> matching = new ArrayList<>();
+            for (int i = 0; i < states.size(); i++) {
+                if ((vaultCriteria.getStatus() == Vault.StateStatus.ALL
+                        || vaultCriteria.getStatus() == metadata.get(i).getStatus())
+                        && recordedMatches(vaultCriteria.getTimeCondition(), metadata.get(i).getRecordedTime()))
+                    matching.add(i);
+            }
+            matching.sort(Comparator.comparing((Integer i) -> metadata.get(i).getRecordedTime())
+                    .thenComparing(i -> states.get(i).getRef().getTxhash().toString())
+                    .thenComparingInt(i -> states.get(i).getRef().getIndex()));
+            int from = Math.min((paging.getPageNumber() - 1) * paging.getPageSize(), matching.size());
+            List<Integer> page = matching.subList(from, Math.min(from + paging.getPageSize(), matching.size()));
+            return new Vault.Page<>(page.stream().map(states::get).collect(Collectors.toList()),
+                    page.stream().map(metadata::get).collect(Collectors.toList()), matching.size(),
+                    vaultCriteria.getStatus(), Collections.emptyList());
+        }
+
+        private boolean recordedMatches(QueryCriteria.TimeCondition condition, Instant recordedTime) {
+            if (condition == null)
+                return true;
+            ColumnPredicate<Instant> predicate = condition.getPredicate();
+            if (predicate instanceof ColumnPredicate.EqualityComparison) {
+                Instant literal = ((ColumnPredicate.EqualityComparison<Instant>) predicate).getRightLiteral();
+                return recordedTime.equals(literal);
+            }
+            ColumnPredicate.BinaryComparison<Instant> comparison = (ColumnPredicate.BinaryComparison<Instant>) predicate;
+            int order = recordedTime.compareTo(comparison.getRightLiteral());
+            return comparison.getOperator() == BinaryComparisonOperator.GREATER_THAN ? order > 0 : order >= 0;
+        }
+    }
+
+    private static class TestState implements ContractState {
+        @Override
+        public List<AbstractParty> getParticipants() {
+            return Collections.emptyList();
+        }
+    }
+}